@@ -0,0 +1,35 @@
+package com.namecolor.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Runs the benchmarks (all, or those matching the JMH command line) and writes the results as JSON
+ *
+ *   java -jar target/benchmarks.jar [JMH options]
+ *
+ * Results go to jmh-result-<time>.json unless -rf / -rff say otherwise, so runs can be compared
+ */
+public final class BenchmarkRunner {
+    
+    private BenchmarkRunner() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        String defaultResult = String.format("jmh-result-%s.json", new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+        
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse(defaultResult))
+                .build();
+        new Runner(options).run();
+    }
+}
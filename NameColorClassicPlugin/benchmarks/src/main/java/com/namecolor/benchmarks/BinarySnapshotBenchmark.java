@@ -0,0 +1,75 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.data.BinarySnapshot;
+import com.namecolor.data.ColorStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading playerdata.dat into a ColorStore on one thread and with the async-startup fork-join pool
+ * threads = 0 reads on the calling thread; otherwise a pool of that many threads decodes and places the records
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BinarySnapshotBenchmark {
+    
+    @Param({"100000", "1000000", "4000000"})
+    public int entries;
+    
+    @Param({"0", "2", "4", "8"})
+    public int threads;
+    
+    private File dataFolder;
+    private File snapshot;
+    private ForkJoinPool pool;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("namecolor-bench").toFile();
+        snapshot = new File(dataFolder, "playerdata.dat");
+        
+        UUID[] uuids = Fixtures.randomUuids(entries);
+        ColorStore store = new ColorStore(entries);
+        for (int i = 0; i < uuids.length; i++) {
+            store.put(uuids[i], (byte) (i & 15));
+        }
+        BinarySnapshot.write(snapshot, store);
+        
+        pool = threads > 0 ? new ForkJoinPool(threads) : null;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        Fixtures.deleteFolder(dataFolder);
+    }
+    
+    @Benchmark
+    public ColorStore read() throws IOException {
+        return BinarySnapshot.read(snapshot, pool);
+    }
+}
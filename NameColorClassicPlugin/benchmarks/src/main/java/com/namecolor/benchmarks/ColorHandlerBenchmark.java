@@ -0,0 +1,49 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.utils.ColorHandler;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Color name lookups, done on every /namecolor command and tab completion
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorHandlerBenchmark {
+    
+    // Exact, mixed-case and unknown names
+    @Param({"green", "LightPurple", "notacolor"})
+    public String colorName;
+    
+    private final String[] allColorNames = ColorHandler.getAllColorNames();
+    
+    @Benchmark
+    public ChatColor getColorByName() {
+        return ColorHandler.getColorByName(colorName);
+    }
+    
+    @Benchmark
+    public boolean isValidColor() {
+        return ColorHandler.isValidColor(colorName);
+    }
+    
+    @Benchmark
+    public String getFormattedColorList() {
+        return ColorHandler.getFormattedColorList(allColorNames);
+    }
+}
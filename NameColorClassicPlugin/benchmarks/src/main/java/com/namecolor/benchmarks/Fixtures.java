@@ -0,0 +1,95 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.NameColorPlugin;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Shared setup for the benchmarks: the bundled config, mocked plugin and players, test data
+ */
+final class Fixtures {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Benchmark");
+    
+    private Fixtures() {
+    }
+    
+    /**
+     * Load the config.yml bundled in the plugin jar
+     */
+    static YamlConfiguration bundledConfig() throws IOException {
+        try (InputStream input = NameColorPlugin.class.getResourceAsStream("/config.yml")) {
+            if (input == null) {
+                throw new IOException("config.yml not found in the plugin jar");
+            }
+            return YamlConfiguration.loadConfiguration(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * A plugin that only provides what PlayerDataManager uses: config, data folder and logger
+     */
+    static JavaPlugin mockPlugin(File dataFolder, FileConfiguration config) {
+        JavaPlugin plugin = mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getLogger()).thenReturn(LOGGER);
+        return plugin;
+    }
+    
+    /**
+     * A player with a fixed UUID, op status and optionally namecolor.color.all
+     */
+    static Player mockPlayer(String name, boolean op, boolean allColors) {
+        Player player = mock(Player.class);
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)));
+        when(player.isOp()).thenReturn(op);
+        when(player.hasPermission(anyString())).thenReturn(false);
+        when(player.hasPermission("namecolor.color.all")).thenReturn(allColors);
+        return player;
+    }
+    
+    /**
+     * Random UUIDs from a fixed seed, so every run uses the same data
+     */
+    static UUID[] randomUuids(int count) {
+        Random random = new Random(42);
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return uuids;
+    }
+    
+    /**
+     * Delete a temporary data folder with its contents
+     */
+    static void deleteFolder(File folder) throws IOException {
+        if (!folder.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.utils.ColorHandler;
+import com.namecolor.utils.MessageFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message formatting with the bundled messages, without and with placeholders
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFormatterBenchmark {
+    
+    private MessageFormatter formatter;
+    private String colorList;
+    
+    @Setup
+    public void setUp() throws IOException {
+        formatter = new MessageFormatter(Fixtures.bundledConfig());
+        colorList = ColorHandler.getFormattedColorList(ColorHandler.getAllColorNames());
+    }
+    
+    @Benchmark
+    public String noPlaceholder() {
+        return formatter.formatMessage("reload-success");
+    }
+    
+    @Benchmark
+    public String onePlaceholder() {
+        return formatter.formatMessage("invalid-color", "{colors}", colorList);
+    }
+    
+    @Benchmark
+    public String threePlaceholders() {
+        return formatter.formatMessage("admin-color-changed", "{player}", "Steve", "{color}", "§agreen§r", "{name}", "§aSteve§r");
+    }
+}
@@ -0,0 +1,105 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.data.DataFormat;
+import com.namecolor.data.PlayerDataManager;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Player color lookups, saves and full loads against a data folder holding the given number of players
+ * Saves go to the write-behind queue, so they measure the caller's cost, not the disk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PlayerDataManagerBenchmark {
+    
+    @Param({"10000", "100000", "1000000"})
+    public int entries;
+    
+    @Param({"yaml", "binary"})
+    public String format;
+    
+    private File dataFolder;
+    private JavaPlugin plugin;
+    private PlayerDataManager dataManager;
+    private UUID[] uuids;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("namecolor-bench").toFile();
+        uuids = Fixtures.randomUuids(entries);
+        
+        File snapshot = new File(dataFolder, format.equals("binary") ? "playerdata.dat" : "playerdata.yml");
+        try (DataFormat.RecordOutput output = DataFormat.fromFileName(snapshot.getName()).openWriter(snapshot)) {
+            for (int i = 0; i < uuids.length; i++) {
+                output.accept(uuids[i], (byte) (i & 15));
+            }
+            output.finish();
+        }
+        
+        YamlConfiguration config = Fixtures.bundledConfig();
+        config.set("storage.format", format);
+        plugin = Fixtures.mockPlugin(dataFolder, config);
+        dataManager = new PlayerDataManager(plugin);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        dataManager.close();
+        Fixtures.deleteFolder(dataFolder);
+    }
+    
+    private UUID nextUuid() {
+        int index = next;
+        next = index + 1 < uuids.length ? index + 1 : 0;
+        return uuids[index];
+    }
+    
+    @Benchmark
+    public String get() {
+        return dataManager.getPlayerColor(nextUuid());
+    }
+    
+    @Benchmark
+    public void save() {
+        dataManager.savePlayerColor(nextUuid(), "green");
+    }
+    
+    /**
+     * Open the storage and load every player, as on enable
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public PlayerDataManager load() {
+        PlayerDataManager loaded = new PlayerDataManager(plugin);
+        loaded.close();
+        return loaded;
+    }
+}
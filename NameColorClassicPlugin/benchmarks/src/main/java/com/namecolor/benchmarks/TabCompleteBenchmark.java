@@ -0,0 +1,82 @@
+package com.namecolor.benchmarks;
+
+import com.namecolor.NameColorPlugin;
+import com.namecolor.commands.NameColorCommand;
+import com.namecolor.utils.PermissionCache;
+import com.namecolor.utils.TabCompletionIndex;
+import org.bukkit.command.Command;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * /namecolor tab completion for a player and an admin with the given number of players online
+ * The plugin, senders and players are Mockito mocks, so each call includes a few mocked getters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabCompleteBenchmark {
+    
+    @Param({"100", "1000"})
+    public int onlinePlayers;
+    
+    private NameColorCommand command;
+    private Command bukkitCommand;
+    private Player player;
+    private Player admin;
+    
+    @Setup
+    public void setUp() throws IOException {
+        YamlConfiguration config = Fixtures.bundledConfig();
+        TabCompletionIndex index = new TabCompletionIndex();
+        for (int i = 0; i < onlinePlayers; i++) {
+            index.addPlayer(String.format("Player%04d", i));
+        }
+        
+        NameColorPlugin plugin = mock(NameColorPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getTabCompletionIndex()).thenReturn(index);
+        when(plugin.getPermissionCache()).thenReturn(new PermissionCache(config));
+        
+        command = new NameColorCommand(plugin);
+        bukkitCommand = mock(Command.class);
+        player = Fixtures.mockPlayer("Steve", false, true);
+        admin = Fixtures.mockPlayer("Alex", true, true);
+    }
+    
+    @Benchmark
+    public List<String> playerColorPrefix() {
+        return command.onTabComplete(player, bukkitCommand, "namecolor", new String[] {"g"});
+    }
+    
+    @Benchmark
+    public List<String> adminPlayerPrefix() {
+        return command.onTabComplete(admin, bukkitCommand, "namecolor", new String[] {"player01"});
+    }
+    
+    @Benchmark
+    public List<String> adminSecondArgument() {
+        return command.onTabComplete(admin, bukkitCommand, "namecolor", new String[] {"Player0001", "l"});
+    }
+}
@@ -2,13 +2,34 @@ package com.namecolor;
 
 import com.namecolor.commands.NameColorCommand;
 import com.namecolor.data.PlayerDataManager;
+import com.namecolor.listeners.ChatFormatListener;
+import com.namecolor.listeners.PermissionCacheListener;
 import com.namecolor.listeners.PlayerJoinListener;
+import com.namecolor.listeners.PlayerQuitListener;
 import com.namecolor.utils.ColorHandler;
+import com.namecolor.utils.DisplayUpdateScheduler;
+import com.namecolor.utils.MetricsDumper;
+import com.namecolor.utils.NameRenderer;
+import com.namecolor.utils.NametagTeams;
+import com.namecolor.utils.PermissionCache;
+import com.namecolor.utils.PluginMetrics;
+import com.namecolor.utils.TabCompletionIndex;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Main plugin class for NameColor
  */
@@ -16,14 +37,51 @@ public class NameColorPlugin extends JavaPlugin {
     
     private PlayerDataManager playerDataManager;
     private NameColorCommand nameColorCommand;
+    // Read by async chat threads, replaced on reload
+    private volatile NameRenderer nameRenderer;
+    private volatile PermissionCache permissionCache;
+    private TabCompletionIndex tabCompletionIndex;
+    private DisplayUpdateScheduler displayUpdateScheduler;
+    private final PluginMetrics metrics = new PluginMetrics();
+    private MetricsDumper metricsDumper;
+    // Shared color teams for above-head nametags, null unless display.nametag is on
+    private NametagTeams nametagTeams;
+    
+    // Config loaded by an async reload; replaces the one loaded by JavaPlugin once published
+    private volatile FileConfiguration reloadedConfig;
     
     @Override
     public void onEnable() {
         // Save default config if it doesn't exist
         saveDefaultConfig();
         
+        // Compile the color aliases, then initialize name rendering with the display settings
+        ColorHandler.loadAliases(getConfig().getConfigurationSection("color-aliases"), getLogger());
+        nameRenderer = new NameRenderer(getConfig());
+        permissionCache = new PermissionCache(getConfig());
+        displayUpdateScheduler = new DisplayUpdateScheduler(this, this::reapplyColor);
+        if (getConfig().getBoolean("display.nametag", false)) {
+            nametagTeams = new NametagTeams(this);
+        }
+        
+        // Index the players already online (for reload); joins and quits keep it current
+        tabCompletionIndex = new TabCompletionIndex();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            tabCompletionIndex.addPlayer(player.getName());
+        }
+        
         // Initialize player data manager
-        playerDataManager = new PlayerDataManager(this);
+        playerDataManager = new PlayerDataManager(this, metrics);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            playerDataManager.playerJoined(player.getUniqueId());
+        }
+        playerDataManager.setRemoteChangeListener(uuids -> {
+            if (isEnabled()) {
+                Bukkit.getScheduler().runTask(this, () -> reapplyRemoteChanges(uuids));
+            }
+        });
+        metricsDumper = new MetricsDumper(this, metrics, playerDataManager);
+        metricsDumper.reschedule(getConfig());
         
         // Register command
         nameColorCommand = new NameColorCommand(this);
@@ -32,22 +90,136 @@ public class NameColorPlugin extends JavaPlugin {
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerQuitListener(this), this);
+        getServer().getPluginManager().registerEvents(new PermissionCacheListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChatFormatListener(this), this);
         
-        // Apply colors to already online players (for reload)
-        reapplyAllColors();
+        // Apply colors to already online players (for reload) once the player data is loaded,
+        // which with storage.async-startup happens after enabling
+        playerDataManager.whenReady(() -> {
+            if (isEnabled()) {
+                Bukkit.getScheduler().runTask(this, this::reapplyAllColors);
+            }
+        });
         
         getLogger().info("NameColor plugin has been enabled!");
     }
     
     @Override
     public void onDisable() {
+        // Held-back color changes are saved with everything else below
+        if (nameColorCommand != null) {
+            nameColorCommand.applyPendingChanges();
+        }
+        if (displayUpdateScheduler != null) {
+            displayUpdateScheduler.cancel();
+        }
+        if (metricsDumper != null) {
+            metricsDumper.cancel();
+        }
+        if (nametagTeams != null) {
+            nametagTeams.unregister();
+            nametagTeams = null;
+        }
+        
         // Save player data synchronously before shutdown
         if (playerDataManager != null) {
             playerDataManager.saveSync();
+            playerDataManager.close();
         }
         getLogger().info("NameColor plugin has been disabled!");
     }
     
+    @Override
+    public FileConfiguration getConfig() {
+        FileConfiguration config = reloadedConfig;
+        return config != null ? config : super.getConfig();
+    }
+    
+    @Override
+    public void reloadConfig() {
+        super.reloadConfig();
+        reloadedConfig = null;
+    }
+    
+    /**
+     * Parse config.yml into a new configuration without touching the live one
+     * Safe to call off the main thread; defaults come from the bundled config.yml like JavaPlugin#reloadConfig
+     * @return The parsed configuration
+     */
+    public FileConfiguration loadConfigFile() {
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(new File(getDataFolder(), "config.yml"));
+        InputStream defaults = getResource("config.yml");
+        if (defaults != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+        }
+        return config;
+    }
+    
+    /**
+     * Switch to a config and the objects built from it (main thread, after an async reload)
+     * @param config The new configuration
+     * @param renderer Name renderer built from it
+     * @param permissions Permission cache built from it
+     */
+    public void publishConfig(FileConfiguration config, NameRenderer renderer, PermissionCache permissions) {
+        NameRenderer previousRenderer = nameRenderer;
+        reloadedConfig = config;
+        ColorHandler.loadAliases(config.getConfigurationSection("color-aliases"), getLogger());
+        nameRenderer = renderer;
+        permissionCache = permissions;
+        displayUpdateScheduler.reloadSettings(config);
+        metricsDumper.reschedule(config);
+        
+        boolean nametags = renderer.isNametagEnabled();
+        if (nametags && nametagTeams == null) {
+            nametagTeams = new NametagTeams(this);
+        } else if (!nametags && nametagTeams != null) {
+            nametagTeams.unregister();
+            nametagTeams = null;
+        }
+        
+        reapplyChangedColors(previousRenderer);
+    }
+    
+    /**
+     * Reapply colors after a reload to the online players whose names come out different
+     * A player whose saved color is the one shown keeps their names and gets no update, unless a display
+     * setting changed (tab list, chat format or nametags), in which case every colored player is reapplied
+     * @param previous The renderer the shown names were built with
+     */
+    private void reapplyChangedColors(NameRenderer previous) {
+        boolean sameRendering = nameRenderer.rendersLike(previous);
+        List<Player> changed = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            UUID uuid = player.getUniqueId();
+            NameRenderer.RenderedName shown = previous.getRendered(uuid);
+            ChatColor savedColor = playerDataManager.getPlayerChatColor(uuid);
+            if (shown == null && savedColor == null) {
+                continue;
+            }
+            if (shown == null || shown.getColor() != savedColor || !sameRendering) {
+                changed.add(player);
+                continue;
+            }
+            
+            nameRenderer.adopt(uuid, shown);
+        }
+        
+        if (!changed.isEmpty()) {
+            displayUpdateScheduler.queueAll(changed);
+        }
+        getLogger().info(String.format("Reload changed the names of %d of %d online players", changed.size(), Bukkit.getOnlinePlayers().size()));
+    }
+    
+    /**
+     * Get the /namecolor command handler
+     * @return NameColorCommand instance
+     */
+    public NameColorCommand getNameColorCommand() {
+        return nameColorCommand;
+    }
+    
     /**
      * Get the player data manager
      * @return PlayerDataManager instance
@@ -56,17 +228,108 @@ public class NameColorPlugin extends JavaPlugin {
         return playerDataManager;
     }
     
+    /**
+     * Get the name renderer
+     * @return NameRenderer instance
+     */
+    public NameRenderer getNameRenderer() {
+        return nameRenderer;
+    }
+    
+    /**
+     * Get the color permission cache
+     * @return PermissionCache instance
+     */
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+    
+    /**
+     * Get the tab completion index
+     * @return TabCompletionIndex instance
+     */
+    public TabCompletionIndex getTabCompletionIndex() {
+        return tabCompletionIndex;
+    }
+    
+    /**
+     * Get the runtime metrics
+     * @return PluginMetrics instance
+     */
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Get the shared nametag teams
+     * @return NametagTeams instance, or null if display.nametag is off
+     */
+    public NametagTeams getNametagTeams() {
+        return nametagTeams;
+    }
+    
+    /**
+     * Get the scheduler that spreads color reapplication over ticks
+     * @return DisplayUpdateScheduler instance
+     */
+    public DisplayUpdateScheduler getDisplayUpdateScheduler() {
+        return displayUpdateScheduler;
+    }
+    
     /**
      * Reapply colors to all online players
-     * Used when plugin is reloaded
+     * Used when plugin is reloaded; the work is spread over ticks within the configured budget
      */
     public void reapplyAllColors() {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            String savedColor = playerDataManager.getPlayerColor(player.getUniqueId());
-            if (savedColor != null && ColorHandler.isValidColor(savedColor)) {
-                applyColorToPlayer(player, savedColor);
+        displayUpdateScheduler.queueAll(Bukkit.getOnlinePlayers());
+    }
+    
+    /**
+     * Reapply the colors another server changed to the affected online players (main thread)
+     * @param uuids The changed players, or null to reapply everyone after a full reload
+     */
+    private void reapplyRemoteChanges(Collection<UUID> uuids) {
+        if (uuids == null) {
+            reapplyAllColors();
+            return;
+        }
+        
+        List<Player> players = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                players.add(player);
             }
         }
+        displayUpdateScheduler.queueAll(players);
+    }
+    
+    /**
+     * Reapply the saved color of one online player
+     * A player NameColor colored earlier who no longer has a color (bulk reset) gets the plain name back
+     * @param player The player
+     */
+    private void reapplyColor(Player player) {
+        ChatColor savedColor = playerDataManager.getPlayerChatColor(player.getUniqueId());
+        playerDataManager.pinPlayer(player.getUniqueId(), savedColor);
+        if (savedColor != null) {
+            applyColorToPlayer(player, savedColor);
+        } else if (nameRenderer.getRendered(player.getUniqueId()) != null) {
+            resetPlayerName(player);
+        }
+    }
+    
+    /**
+     * Give a player their plain name back (display name, tab list and nametag)
+     * @param player The player
+     */
+    public void resetPlayerName(Player player) {
+        player.setDisplayName(player.getName());
+        player.setPlayerListName(player.getName());
+        nameRenderer.invalidate(player.getUniqueId());
+        if (nametagTeams != null) {
+            nametagTeams.reset(player.getName());
+        }
     }
     
     /**
@@ -78,15 +341,26 @@ public class NameColorPlugin extends JavaPlugin {
         ChatColor color = ColorHandler.getColorByName(colorName);
         if (color == null) return;
         
+        applyColorToPlayer(player, color);
+    }
+    
+    /**
+     * Apply an already resolved color to a player based on config settings
+     * @param player The player to apply color to
+     * @param color The color
+     */
+    public void applyColorToPlayer(Player player, ChatColor color) {
+        NameRenderer.RenderedName rendered = nameRenderer.render(player.getUniqueId(), player.getName(), color);
+        
         // Always apply to display name (chat and above head)
-        player.setDisplayName(color + player.getName() + ChatColor.RESET);
-        
-        // Apply to tab list if enabled
-        boolean showInTab = getConfig().getBoolean("display.tab-list", true);
-        if (showInTab) {
-            player.setPlayerListName(color + player.getName() + ChatColor.RESET);
-        } else {
-            player.setPlayerListName(player.getName());
+        player.setDisplayName(rendered.getDisplayName());
+        
+        // Apply to tab list if enabled (the plain name otherwise)
+        player.setPlayerListName(rendered.getListName());
+        
+        // Above-head nametag through the shared team of the color
+        if (nametagTeams != null) {
+            nametagTeams.setColor(player.getName(), color);
         }
     }
 }
@@ -1,19 +1,40 @@
 package com.namecolor.commands;
 
 import com.namecolor.NameColorPlugin;
+import com.namecolor.data.DataFormat;
+import com.namecolor.data.PlayerDataManager;
+import com.namecolor.utils.ColorChangeLimiter;
 import com.namecolor.utils.ColorHandler;
 import com.namecolor.utils.MessageFormatter;
+import com.namecolor.utils.MetricsDumper;
+import com.namecolor.utils.NameRenderer;
+import com.namecolor.utils.PermissionCache;
+import com.namecolor.utils.PluginMetrics;
+import com.namecolor.utils.TabCompletionIndex;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Handles the /namecolor command
@@ -23,20 +44,55 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
     private final NameColorPlugin plugin;
     private MessageFormatter formatter;
     
+    // Bulk target prefixes: online players with a permission, or a UUID list file in the plugin folder
+    private static final String BULK_PERMISSION_PREFIX = "perm:";
+    private static final String BULK_FILE_PREFIX = "file:";
+    
+    // Imported records are handed to the data manager this many at a time
+    private static final int IMPORT_BATCH_SIZE = 10000;
+    
+    // Set while an async reload is running
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    
+    // Token buckets for players changing their own color and for admins changing a player's color
+    private final ColorChangeLimiter selfLimiter;
+    private final ColorChangeLimiter adminLimiter;
+    
     public NameColorCommand(NameColorPlugin plugin) {
         this.plugin = plugin;
         this.formatter = new MessageFormatter(plugin.getConfig());
+        this.selfLimiter = new ColorChangeLimiter(plugin, plugin.getMetrics(), "self");
+        this.adminLimiter = new ColorChangeLimiter(plugin, plugin.getMetrics(), "admin");
     }
     
     /**
-     * Reload the message formatter with updated config
+     * Drop a player's held-back color changes and rate limit state (quit)
+     * @param uuid Player UUID
      */
-    public void reloadFormatter() {
-        this.formatter = new MessageFormatter(plugin.getConfig());
+    public void releasePlayer(UUID uuid) {
+        selfLimiter.release(uuid);
+        adminLimiter.release(uuid);
+    }
+    
+    /**
+     * Apply every held-back color change now (disable)
+     */
+    public void applyPendingChanges() {
+        selfLimiter.applyAllPending();
+        adminLimiter.applyAllPending();
     }
     
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return handleCommand(sender, args);
+        } finally {
+            plugin.getMetrics().record(PluginMetrics.Timer.COMMAND, System.nanoTime() - start);
+        }
+    }
+    
+    private boolean handleCommand(CommandSender sender, String[] args) {
         // Check if reload subcommand
         if (args.length > 0 && args[0].equalsIgnoreCase("reload")) {
             return handleReload(sender);
@@ -52,6 +108,19 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
             return handleList(sender);
         }
         
+        // Check if stats subcommand
+        if (args.length == 1 && args[0].equalsIgnoreCase("stats")) {
+            return handleStats(sender);
+        }
+        
+        // Check if bulk or data subcommand (with 2 arguments it is the admin command for a player of that name)
+        if (args.length > 0 && args.length != 2 && args[0].equalsIgnoreCase("bulk")) {
+            return handleBulk(sender, args);
+        }
+        if (args.length > 0 && args.length != 2 && args[0].equalsIgnoreCase("data")) {
+            return handleData(sender, args);
+        }
+        
         // Check if admin command (2 arguments)
         if (args.length == 2) {
             return handleAdminCommand(sender, args[0], args[1]);
@@ -99,20 +168,44 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
             player.sendMessage(formatter.formatMessage("invalid-color", "{colors}", ColorHandler.getFormattedColorList(getAvailableColors(player))));
             return true;
         }
+        // An alias is shown and stored as the color it stands for
+        String canonicalName = ColorHandler.getColorName(color);
+        String coloredColorName = color + canonicalName + ChatColor.RESET;
         
-        // Apply color based on config settings
-        plugin.applyColorToPlayer(player, colorName);
-        
-        // Save to data file
-        plugin.getPlayerDataManager().savePlayerColor(player.getUniqueId(), colorName);
-        
-        // Send success message with colored name and colored color name
-        String coloredColorName = color + colorName + ChatColor.RESET;
-        player.sendMessage(formatter.formatMessage("color-changed", "{color}", coloredColorName, "{name}", player.getDisplayName()));
+        ColorChangeLimiter.Result result = selfLimiter.submit(player.getUniqueId(), player, () -> {
+            // Apply color based on config settings
+            plugin.applyColorToPlayer(player, canonicalName);
+            
+            // Save to data file
+            plugin.getPlayerDataManager().savePlayerColor(player.getUniqueId(), canonicalName);
+            
+            // Send success message with colored name and colored color name
+            player.sendMessage(formatter.formatMessage("color-changed", "{color}", coloredColorName, "{name}", player.getDisplayName()));
+        }, null);
+        sendRateLimited(player, selfLimiter, player.getUniqueId(), result, coloredColorName);
         
         return true;
     }
     
+    /**
+     * Tell an admin that another admin's change replaced theirs before it was applied, and log it
+     */
+    private void notifyReplaced(CommandSender sender, CommandSender newer, Player target, String colorLabel) {
+        plugin.getLogger().info(String.format("%s's held-back color change for %s was replaced by a change from %s",
+                sender.getName(), target.getName(), newer.getName()));
+        sender.sendMessage(formatter.formatMessage("rate-limit-replaced", "{player}", target.getName(), "{color}", colorLabel, "{sender}", newer.getName()));
+    }
+    
+    /**
+     * Tell the sender that a change was held back, once per wait (later changes in the same wait replace it silently)
+     */
+    private void sendRateLimited(CommandSender sender, ColorChangeLimiter limiter, UUID uuid, ColorChangeLimiter.Result result, String colorLabel) {
+        if (result == ColorChangeLimiter.Result.DEFERRED) {
+            double seconds = limiter.getWaitMillis(uuid) / 1000.0;
+            sender.sendMessage(formatter.formatMessage("rate-limited", "{color}", colorLabel, "{seconds}", String.format("%.1f", seconds)));
+        }
+    }
+    
     /**
      * Handle the reload subcommand
      */
@@ -123,17 +216,46 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
             return true;
         }
         
-        // Reload config
-        plugin.reloadConfig();
-        plugin.getPlayerDataManager().reload();
-        
-        // Reload formatter with new config
-        reloadFormatter();
-        
-        // Reapply colors to online players
-        plugin.reapplyAllColors();
+        if (!reloading.compareAndSet(false, true)) {
+            sender.sendMessage(formatter.formatMessage("reload-in-progress"));
+            return true;
+        }
         
-        sender.sendMessage(formatter.formatMessage("reload-success"));
+        // Parse config and player data off the main thread into new objects
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            FileConfiguration config;
+            MessageFormatter newFormatter;
+            NameRenderer renderer;
+            PermissionCache permissions;
+            try {
+                config = plugin.loadConfigFile();
+                newFormatter = new MessageFormatter(config);
+                renderer = new NameRenderer(config);
+                permissions = new PermissionCache(config);
+                
+                // Publishes the reloaded color store atomically itself
+                plugin.getPlayerDataManager().reload();
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe(String.format("Could not reload NameColor: %s", e.getMessage()));
+                reloading.set(false);
+                return;
+            }
+            
+            // The main thread only swaps references and schedules display updates for the players whose names changed
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                // A failure here must not block every later reload
+                try {
+                    plugin.publishConfig(config, renderer, permissions);
+                    formatter = newFormatter;
+                    selfLimiter.reloadSettings(config);
+                    adminLimiter.reloadSettings(config);
+                } finally {
+                    reloading.set(false);
+                }
+                
+                sender.sendMessage(formatter.formatMessage("reload-success"));
+            });
+        });
         return true;
     }
     
@@ -141,15 +263,17 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
      * Handle the reset command
      */
     private boolean handleReset(Player player) {
-        // Reset display name and tab list name to original
-        player.setDisplayName(player.getName());
-        player.setPlayerListName(player.getName());
-        
-        // Remove from data file
-        plugin.getPlayerDataManager().removePlayerColor(player.getUniqueId());
-        
-        // Send success message
-        player.sendMessage(formatter.formatMessage("color-reset"));
+        ColorChangeLimiter.Result result = selfLimiter.submit(player.getUniqueId(), player, () -> {
+            // Reset display name, tab list name and nametag to original
+            plugin.resetPlayerName(player);
+            
+            // Remove from data file
+            plugin.getPlayerDataManager().removePlayerColor(player.getUniqueId());
+            
+            // Send success message
+            player.sendMessage(formatter.formatMessage("color-reset"));
+        }, null);
+        sendRateLimited(player, selfLimiter, player.getUniqueId(), result, "reset");
         
         return true;
     }
@@ -175,16 +299,18 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
         
         // Check if reset command
         if (colorName.equals("reset")) {
-            // Reset target's display name and tab list name
-            target.setDisplayName(target.getName());
-            target.setPlayerListName(target.getName());
-            
-            // Remove from data file
-            plugin.getPlayerDataManager().removePlayerColor(target.getUniqueId());
-            
-            // Send messages
-            sender.sendMessage(formatter.formatMessage("admin-color-reset", "{player}", target.getName()));
-            target.sendMessage(formatter.formatMessage("admin-color-reset-target"));
+            ColorChangeLimiter.Result result = adminLimiter.submit(target.getUniqueId(), sender, () -> {
+                // Reset target's display name, tab list name and nametag
+                plugin.resetPlayerName(target);
+                
+                // Remove from data file
+                plugin.getPlayerDataManager().removePlayerColor(target.getUniqueId());
+                
+                // Send messages
+                sender.sendMessage(formatter.formatMessage("admin-color-reset", "{player}", target.getName()));
+                target.sendMessage(formatter.formatMessage("admin-color-reset-target"));
+            }, newer -> notifyReplaced(sender, newer, target, "reset"));
+            sendRateLimited(sender, adminLimiter, target.getUniqueId(), result, "reset");
             
             return true;
         }
@@ -202,21 +328,284 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(formatter.formatMessage("invalid-color-admin", "{colors}", ColorHandler.getFormattedColorList(ColorHandler.getAllColorNames())));
             return true;
         }
+        String canonicalName = ColorHandler.getColorName(color);
+        String coloredColorName = color + canonicalName + ChatColor.RESET;
         
-        // Apply color based on config settings
-        plugin.applyColorToPlayer(target, colorName);
+        ColorChangeLimiter.Result result = adminLimiter.submit(target.getUniqueId(), sender, () -> {
+            // Apply color based on config settings
+            plugin.applyColorToPlayer(target, canonicalName);
+            
+            // Save to data file
+            plugin.getPlayerDataManager().savePlayerColor(target.getUniqueId(), canonicalName);
+            
+            // Send success messages with colored name and colored color name
+            sender.sendMessage(formatter.formatMessage("admin-color-changed", "{player}", target.getName(), "{color}", coloredColorName, "{name}", target.getDisplayName()));
+            target.sendMessage(formatter.formatMessage("admin-color-changed-target", "{color}", coloredColorName, "{name}", target.getDisplayName()));
+        }, newer -> notifyReplaced(sender, newer, target, coloredColorName));
+        sendRateLimited(sender, adminLimiter, target.getUniqueId(), result, coloredColorName);
+        
+        return true;
+    }
+    
+    /**
+     * Handle the stats subcommand: timings, save counters and cache state since the plugin was enabled
+     */
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.isOp() && !sender.hasPermission("namecolor.admin")) {
+            sender.sendMessage(formatter.formatMessage("no-permission-command"));
+            return true;
+        }
         
-        // Save to data file
-        plugin.getPlayerDataManager().savePlayerColor(target.getUniqueId(), colorName);
+        PluginMetrics metrics = plugin.getMetrics();
+        PlayerDataManager dataManager = plugin.getPlayerDataManager();
+        sender.sendMessage(formatter.formatMessage("stats-header"));
+        for (PluginMetrics.Timer timer : PluginMetrics.Timer.values()) {
+            PluginMetrics.Histogram histogram = metrics.getHistogram(timer);
+            sender.sendMessage(formatter.formatMessage("stats-timer", "{name}", timer.getLabel(),
+                    "{count}", String.valueOf(histogram.getCount()),
+                    "{avg}", MetricsDumper.formatMillis(histogram.getMeanMillis()),
+                    "{p50}", MetricsDumper.formatMillis(histogram.getPercentileMillis(50)),
+                    "{p99}", MetricsDumper.formatMillis(histogram.getPercentileMillis(99)),
+                    "{max}", MetricsDumper.formatMillis(histogram.getMaxMillis())));
+        }
+        sender.sendMessage(formatter.formatMessage("stats-saves",
+                "{batches}", String.valueOf(metrics.getCount(PluginMetrics.Counter.SAVE_BATCHES)),
+                "{records}", String.valueOf(metrics.getCount(PluginMetrics.Counter.SAVE_RECORDS)),
+                "{coalesced}", String.valueOf(metrics.getCount(PluginMetrics.Counter.SAVE_COALESCED)),
+                "{failures}", String.valueOf(metrics.getCount(PluginMetrics.Counter.SAVE_FAILURES))));
+        sender.sendMessage(formatter.formatMessage("stats-rate-limit",
+                "{limited}", String.valueOf(metrics.getCount(PluginMetrics.Counter.RATE_LIMITED)),
+                "{superseded}", String.valueOf(metrics.getCount(PluginMetrics.Counter.RATE_LIMIT_SUPERSEDED))));
+        sender.sendMessage(formatter.formatMessage("stats-cache",
+                "{size}", String.valueOf(dataManager.getCacheSize()),
+                "{memory}", String.valueOf(dataManager.getCacheMemoryBytes() / 1024),
+                "{dirty}", String.valueOf(dataManager.getDirtyCount())));
+        return true;
+    }
+    
+    /**
+     * Handle the bulk subcommand: /namecolor bulk <all|perm:node|file:name> <color|reset>
+     * All targets are changed in one batch and written by a single flush; display updates for online
+     * players are spread over ticks. UUID list files are read off the main thread
+     */
+    private boolean handleBulk(CommandSender sender, String[] args) {
+        if (!sender.isOp() && !sender.hasPermission("namecolor.admin")) {
+            sender.sendMessage(formatter.formatMessage("admin-no-permission"));
+            return true;
+        }
         
-        // Send success messages with colored name and colored color name
-        String coloredColorName = color + colorName + ChatColor.RESET;
-        sender.sendMessage(formatter.formatMessage("admin-color-changed", "{player}", target.getName(), "{color}", coloredColorName, "{name}", target.getDisplayName()));
-        target.sendMessage(formatter.formatMessage("admin-color-changed-target", "{color}", coloredColorName, "{name}", target.getDisplayName()));
+        if (args.length != 3) {
+            sender.sendMessage(formatter.formatMessage("bulk-usage"));
+            return true;
+        }
         
+        String target = args[1];
+        String colorName = args[2].toLowerCase();
+        ChatColor color = null;
+        if (!colorName.equals("reset")) {
+            color = ColorHandler.getColorByName(colorName);
+            if (color == null) {
+                sender.sendMessage(formatter.formatMessage("invalid-color-admin", "{colors}", ColorHandler.getFormattedColorList(ColorHandler.getAllColorNames())));
+                return true;
+            }
+            colorName = ColorHandler.getColorName(color);
+        }
+        String newColor = color != null ? colorName : null;
+        String colorLabel = color != null ? color + colorName + ChatColor.RESET : "reset";
+        
+        String lowerTarget = target.toLowerCase();
+        if (lowerTarget.equals("all") || lowerTarget.startsWith(BULK_PERMISSION_PREFIX)) {
+            String permission = lowerTarget.equals("all") ? null : target.substring(BULK_PERMISSION_PREFIX.length());
+            List<Player> players = new ArrayList<>();
+            List<UUID> uuids = new ArrayList<>();
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (permission == null || player.hasPermission(permission)) {
+                    players.add(player);
+                    uuids.add(player.getUniqueId());
+                }
+            }
+            
+            discardHeldBack(uuids, sender);
+            int changed = plugin.getPlayerDataManager().setPlayerColors(uuids, newColor);
+            plugin.getDisplayUpdateScheduler().queueAll(players);
+            sender.sendMessage(formatter.formatMessage("bulk-applied", "{color}", colorLabel, "{count}", String.valueOf(changed),
+                    "{total}", String.valueOf(uuids.size()), "{target}", target));
+            return true;
+        }
+        
+        if (lowerTarget.startsWith(BULK_FILE_PREFIX)) {
+            String fileName = target.substring(BULK_FILE_PREFIX.length());
+            File file = getPluginFile(fileName);
+            if (file == null) {
+                sender.sendMessage(formatter.formatMessage("bulk-file-error", "{file}", fileName));
+                return true;
+            }
+            
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                Set<UUID> uuids;
+                try {
+                    uuids = readUuidList(file);
+                } catch (IOException e) {
+                    plugin.getLogger().severe(String.format("Could not read UUID list %s: %s", file.getName(), e.getMessage()));
+                    Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(formatter.formatMessage("bulk-file-error", "{file}", fileName)));
+                    return;
+                }
+                
+                // The limiters live on the main thread; the data manager is thread-safe, so the write goes back off it
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    discardHeldBack(uuids, sender);
+                    Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                        int changed = plugin.getPlayerDataManager().setPlayerColors(uuids, newColor);
+                        Bukkit.getScheduler().runTask(plugin, () -> {
+                            List<Player> players = new ArrayList<>();
+                            for (Player player : Bukkit.getOnlinePlayers()) {
+                                if (uuids.contains(player.getUniqueId())) {
+                                    players.add(player);
+                                }
+                            }
+                            plugin.getDisplayUpdateScheduler().queueAll(players);
+                            sender.sendMessage(formatter.formatMessage("bulk-applied", "{color}", colorLabel, "{count}", String.valueOf(changed),
+                                    "{total}", String.valueOf(uuids.size()), "{target}", target));
+                        });
+                    });
+                });
+            });
+            return true;
+        }
+        
+        sender.sendMessage(formatter.formatMessage("bulk-usage"));
+        return true;
+    }
+    
+    /**
+     * Drop the rate-limited changes still held back for players a bulk change sets, before it is written,
+     * so a held-back change cannot land on top of it afterwards
+     */
+    private void discardHeldBack(Collection<UUID> uuids, CommandSender sender) {
+        selfLimiter.discard(uuids, sender);
+        adminLimiter.discard(uuids, sender);
+    }
+    
+    /**
+     * Handle the data subcommand: /namecolor data <import|export> <file>
+     * Files in the plugin folder are streamed record by record off the main thread; the format
+     * follows the extension (.yml, .csv or .dat)
+     */
+    private boolean handleData(CommandSender sender, String[] args) {
+        if (!sender.isOp()) {
+            sender.sendMessage(formatter.formatMessage("no-permission-command"));
+            return true;
+        }
+        
+        boolean export = args.length == 3 && args[1].equalsIgnoreCase("export");
+        if (args.length != 3 || (!export && !args[1].equalsIgnoreCase("import"))) {
+            sender.sendMessage(formatter.formatMessage("data-usage"));
+            return true;
+        }
+        
+        String fileName = args[2];
+        File file = getPluginFile(fileName);
+        DataFormat format = DataFormat.fromFileName(fileName);
+        if (file == null || format == null) {
+            sender.sendMessage(formatter.formatMessage("data-usage"));
+            return true;
+        }
+        if (export ? file.exists() : !file.isFile()) {
+            sender.sendMessage(formatter.formatMessage(export ? "data-file-exists" : "data-file-error", "{file}", fileName));
+            return true;
+        }
+        
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                if (export) {
+                    int count = exportData(file, format);
+                    Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(formatter.formatMessage("data-exported",
+                            "{count}", String.valueOf(count), "{file}", fileName)));
+                } else {
+                    int[] counts = importData(file, format);
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        plugin.reapplyAllColors();
+                        sender.sendMessage(formatter.formatMessage("data-imported", "{count}", String.valueOf(counts[0]),
+                                "{changed}", String.valueOf(counts[1]), "{file}", fileName));
+                    });
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe(String.format("Could not %s %s: %s", export ? "export to" : "import from", fileName, e.getMessage()));
+                Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(formatter.formatMessage("data-file-error", "{file}", fileName)));
+            }
+        });
         return true;
     }
     
+    /**
+     * Stream all saved colors into a new file
+     * @return Number of records written
+     */
+    private int exportData(File file, DataFormat format) throws IOException {
+        try (DataFormat.RecordOutput output = format.openWriter(file)) {
+            plugin.getPlayerDataManager().exportData(output);
+            return output.finish();
+        }
+    }
+    
+    /**
+     * Stream a file into the player data in batches
+     * @return Records read and players changed
+     */
+    private int[] importData(File file, DataFormat format) throws IOException {
+        PlayerDataManager dataManager = plugin.getPlayerDataManager();
+        Map<UUID, Byte> batch = new LinkedHashMap<>();
+        int[] changed = {0};
+        int records = format.read(file, (uuid, color) -> {
+            batch.put(uuid, color);
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                changed[0] += dataManager.importPlayerColors(batch);
+                batch.clear();
+            }
+        }, plugin.getLogger());
+        changed[0] += dataManager.importPlayerColors(batch);
+        return new int[] {records, changed[0]};
+    }
+    
+    /**
+     * Resolve a plain file name inside the plugin folder
+     * @return The file, or null if the name is empty or points elsewhere
+     */
+    private File getPluginFile(String fileName) {
+        if (fileName.isEmpty() || fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+            return null;
+        }
+        return new File(plugin.getDataFolder(), fileName);
+    }
+    
+    /**
+     * Read a UUID list file: one UUID per line, blank lines and lines starting with # are skipped
+     * Invalid lines are logged and skipped
+     */
+    private Set<UUID> readUuidList(File file) throws IOException {
+        Set<UUID> uuids = new LinkedHashSet<>();
+        int invalid = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    uuids.add(UUID.fromString(line));
+                } catch (IllegalArgumentException e) {
+                    invalid++;
+                }
+            }
+        }
+        
+        if (invalid > 0) {
+            plugin.getLogger().warning(String.format("Skipped %d invalid lines in UUID list %s", invalid, file.getName()));
+        }
+        return uuids;
+    }
+    
     /**
      * Handle the help command
      */
@@ -233,11 +622,14 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(formatter.getPrefix() + " " + formatter.getHelpMessage("admin-header"));
             sender.sendMessage(formatter.getHelpMessage("admin-change-color"));
             sender.sendMessage(formatter.getHelpMessage("admin-reset-color"));
+            sender.sendMessage(formatter.getHelpMessage("admin-bulk"));
+            sender.sendMessage(formatter.getHelpMessage("admin-stats"));
         }
         
         // Show reload command if they are OP
         if (sender.isOp()) {
             sender.sendMessage(formatter.getHelpMessage("reload-command"));
+            sender.sendMessage(formatter.getHelpMessage("data-command"));
         }
         
         return true;
@@ -275,9 +667,10 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
     private String[] getAvailableColors(Player player) {
         List<String> availableColors = new ArrayList<>();
         String[] allColors = ColorHandler.getAllColorNames();
+        int colorMask = plugin.getPermissionCache().getColorMask(player);
         
         for (String color : allColors) {
-            if (hasColorPermission(player, color)) {
+            if ((colorMask & (1 << ColorHandler.getColorOrdinal(color))) != 0) {
                 availableColors.add(color);
             }
         }
@@ -287,76 +680,77 @@ public class NameColorCommand implements CommandExecutor, TabCompleter {
     
     /**
      * Check if player has permission to use a specific color
+     * Served from the cached permission mask (see PermissionCache for the rules)
      */
     private boolean hasColorPermission(Player player, String colorName) {
-        // OP players have access to all colors
-        if (player.isOp()) {
-            return true;
-        }
-        
-        // Admin permission grants access to all colors
-        if (player.hasPermission("namecolor.admin")) {
-            return true;
-        }
-        
-        // Check for all colors permission
-        if (player.hasPermission("namecolor.color.all")) {
-            return true;
-        }
-        
-        // Check for all colors except black permission
-        if (player.hasPermission("namecolor.color.noblack") && !colorName.equals("black")) {
-            return true;
-        }
-        
-        // Check individual color permission
-        return player.hasPermission("namecolor.color." + colorName);
+        return plugin.getPermissionCache().canUseColor(player, ColorHandler.getColorByName(colorName));
     }
     
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return completeArguments(sender, args);
+        } finally {
+            plugin.getMetrics().record(PluginMetrics.Timer.TAB_COMPLETE, System.nanoTime() - start);
+        }
+    }
+    
+    private List<String> completeArguments(CommandSender sender, String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            return Collections.emptyList();
+        }
+        
+        // Capabilities come from the cached permission mask for players
+        TabCompletionIndex index = plugin.getTabCompletionIndex();
+        PermissionCache permissions = plugin.getPermissionCache();
+        Player player = sender instanceof Player ? (Player) sender : null;
+        boolean admin = player != null ? permissions.isAdmin(player) : sender.isOp() || sender.hasPermission("namecolor.admin");
+        
+        // Candidates are lowercase, so only the typed text needs lowercasing
+        String input = args[args.length - 1].toLowerCase();
         List<String> completions = new ArrayList<>();
         
         if (args.length == 1) {
             // First argument - suggest colors, reset, reload, or player names
-            if (sender instanceof Player) {
-                Player player = (Player) sender;
-                String[] colors = getAvailableColors(player);
-                completions.addAll(Arrays.asList(colors));
-                completions.add("reset");
+            if (player != null) {
+                index.completeColors(input, permissions.getColorMask(player), completions);
+                TabCompletionIndex.completeLiteral("reset", input, completions);
             }
             
             // Add help for everyone
-            completions.add("help");
-            completions.add("list");
+            TabCompletionIndex.completeLiteral("help", input, completions);
+            TabCompletionIndex.completeLiteral("list", input, completions);
             
-            // Add reload if sender is OP
-            if (sender != null && sender.isOp()) {
-                completions.add("reload");
+            // Add reload and data if sender is OP
+            if (sender.isOp()) {
+                TabCompletionIndex.completeLiteral("reload", input, completions);
+                TabCompletionIndex.completeLiteral("data", input, completions);
             }
             
-            // Add player names if sender has admin permission
-            if (sender != null && (sender.isOp() || sender.hasPermission("namecolor.admin"))) {
-                plugin.getServer().getOnlinePlayers().forEach(p -> completions.add(p.getName()));
+            // Add bulk, stats and player names if sender has admin permission
+            if (admin) {
+                TabCompletionIndex.completeLiteral("bulk", input, completions);
+                TabCompletionIndex.completeLiteral("stats", input, completions);
+                index.completePlayers(input, completions);
             }
-            
-            // Filter based on what the player has typed
-            String input = args[0].toLowerCase();
-            return completions.stream()
-                    .filter(s -> s.toLowerCase().startsWith(input))
-                    .collect(Collectors.toList());
-        } else if (args.length == 2) {
-            // Second argument - suggest colors or reset (only for admin commands)
-            if (sender.isOp() || sender.hasPermission("namecolor.admin")) {
-                completions.addAll(Arrays.asList(ColorHandler.getAllColorNames()));
-                completions.add("reset");
-                
-                // Filter based on what the player has typed
-                String input = args[1].toLowerCase();
-                return completions.stream()
-                        .filter(s -> s.toLowerCase().startsWith(input))
-                        .collect(Collectors.toList());
+        } else if (sender.isOp() && args.length == 2 && args[0].equalsIgnoreCase("data")) {
+            TabCompletionIndex.completeLiteral("export", input, completions);
+            TabCompletionIndex.completeLiteral("import", input, completions);
+        } else if (admin && args[0].equalsIgnoreCase("bulk")) {
+            // Bulk target, then the color (a 2-argument command may also be for a player named "bulk")
+            if (args.length == 2) {
+                TabCompletionIndex.completeLiteral("all", input, completions);
+                TabCompletionIndex.completeLiteral(BULK_PERMISSION_PREFIX, input, completions);
+                TabCompletionIndex.completeLiteral(BULK_FILE_PREFIX, input, completions);
+            } else {
+                index.completeColors(input, 0xFFFF, completions);
+                TabCompletionIndex.completeLiteral("reset", input, completions);
             }
+        } else if (admin && args.length == 2) {
+            // Second argument - suggest colors or reset (only for admin commands)
+            index.completeColors(input, 0xFFFF, completions);
+            TabCompletionIndex.completeLiteral("reset", input, completions);
         }
         
         return completions;
@@ -0,0 +1,556 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.ColorNames;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of player colors (playerdata.dat)
+ *
+ * Layout (big-endian):
+ *   header  - magic "NCPD" (int), version (int), record count (int), CRC32 of the records (long)
+ *   records - UUID most significant bits (long), least significant bits (long), ChatColor ordinal (byte)
+ *
+ * Records are sorted by UUID so single records can be located by binary search
+ */
+public class BinarySnapshot {
+    
+    public static final int MAGIC = 0x4E435044; // "NCPD"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    public static final int RECORD_SIZE = 8 + 8 + 1;
+    
+    private static final int WRITE_BUFFER_RECORDS = 4096;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    
+    // Records decoded per fork-join task when reading in parallel
+    private static final int PARALLEL_READ_CHUNK = 1 << 16;
+    
+    private BinarySnapshot() {
+    }
+    
+    /**
+     * Read a snapshot into memory in one piece
+     * @param file The snapshot file
+     * @return A store presized for and holding all records
+     * @throws IOException if the file cannot be read or fails validation
+     */
+    public static ColorStore read(File file) throws IOException {
+        return read(file, null);
+    }
+    
+    /**
+     * Read a snapshot, decoding and placing its records in parallel
+     * Each fork-join task validates and decodes its own range of the file, including each
+     * record's home slot, while another task verifies the checksum; the records are then placed into
+     * one presized store by one task per slot range (see {@link ColorStore#fromRecords})
+     * @param file The snapshot file
+     * @param pool Pool for the chunk tasks, or null to read on the calling thread
+     * @return A store presized for and holding all records
+     * @throws IOException if the file cannot be read or fails validation
+     */
+    public static ColorStore read(File file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Read into the heap rather than mapping the file: a mapping stays open until it is garbage
+            // collected, and on Windows an open mapping makes the atomic replace of the snapshot fail
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            readHeader(header, size);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("snapshot of %d bytes is too large to read", size));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            readFully(channel, buffer, 0);
+            int count = readHeader(buffer, size);
+            long checksum = buffer.getLong(HEADER_SIZE - 8);
+            if (pool != null && count > PARALLEL_READ_CHUNK) {
+                return readParallel(buffer, count, checksum, pool);
+            }
+            
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+            
+            ColorStore store = new ColorStore(count);
+            long previousMost = Long.MIN_VALUE;
+            long previousLeast = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                long most = buffer.getLong();
+                long least = buffer.getLong();
+                byte ordinal = buffer.get();
+                if (ColorNames.getName(ordinal) == null) {
+                    throw new IOException(String.format("invalid color ordinal %d in record %d", ordinal, i));
+                }
+                if (i > 0 && compare(previousMost, previousLeast, most, least) >= 0) {
+                    throw new IOException(String.format("record %d is out of order or a duplicate", i));
+                }
+                store.put(most, least, ordinal);
+                previousMost = most;
+                previousLeast = least;
+            }
+            return store;
+        }
+    }
+    
+    /**
+     * Decode the records of a snapshot in memory with a fork-join pool (see {@link #read(File, ForkJoinPool)})
+     */
+    private static ColorStore readParallel(ByteBuffer buffer, int count, long checksum, ForkJoinPool pool) throws IOException {
+        ForkJoinTask<Long> crcTask = pool.submit(() -> {
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            return crc.getValue();
+        });
+        
+        long[] most = new long[count];
+        long[] least = new long[count];
+        byte[] colors = new byte[count];
+        int[] homes = new int[count];
+        int capacity = ColorStore.presizedCapacity(count);
+        try {
+            pool.invoke(new DecodeTask(buffer, most, least, colors, homes, capacity, 0, count));
+        } catch (UncheckedIOException e) {
+            crcTask.cancel(true);
+            throw e.getCause();
+        }
+        if (crcTask.join() != checksum) {
+            throw new IOException("checksum mismatch");
+        }
+        
+        return ColorStore.fromRecords(most, least, colors, homes, pool);
+    }
+    
+    /**
+     * Decodes a range of records into the shared arrays, splitting it while it is larger than one chunk
+     * Records must be in strictly increasing UUID order, which also rules out duplicate keys for the placement
+     */
+    private static final class DecodeTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final ByteBuffer buffer;
+        private final long[] most;
+        private final long[] least;
+        private final byte[] colors;
+        private final int[] homes;
+        private final int capacity;
+        private final int from;
+        private final int to;
+        
+        DecodeTask(ByteBuffer buffer, long[] most, long[] least, byte[] colors, int[] homes, int capacity, int from, int to) {
+            this.buffer = buffer;
+            this.most = most;
+            this.least = least;
+            this.colors = colors;
+            this.homes = homes;
+            this.capacity = capacity;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_READ_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeTask(buffer, most, least, colors, homes, capacity, from, middle),
+                        new DecodeTask(buffer, most, least, colors, homes, capacity, middle, to));
+                return;
+            }
+            
+            // Each task reads through its own view of the buffer, starting with the record before its range
+            ByteBuffer records = buffer.duplicate();
+            long previousMost = Long.MIN_VALUE;
+            long previousLeast = Long.MIN_VALUE;
+            if (from > 0) {
+                records.position(HEADER_SIZE + (from - 1) * RECORD_SIZE);
+                previousMost = records.getLong();
+                previousLeast = records.getLong();
+            }
+            records.position(HEADER_SIZE + from * RECORD_SIZE);
+            for (int i = from; i < to; i++) {
+                most[i] = records.getLong();
+                least[i] = records.getLong();
+                colors[i] = records.get();
+                if (ColorNames.getName(colors[i]) == null) {
+                    throw new UncheckedIOException(new IOException(String.format("invalid color ordinal %d in record %d", colors[i], i)));
+                }
+                if (i > 0 && compare(previousMost, previousLeast, most[i], least[i]) >= 0) {
+                    throw new UncheckedIOException(new IOException(String.format("record %d is out of order or a duplicate", i)));
+                }
+                homes[i] = ColorStore.homeSlot(most[i], least[i], capacity);
+                previousMost = most[i];
+                previousLeast = least[i];
+            }
+        }
+    }
+    
+    /**
+     * Stream all records of a snapshot to a sink through a fixed-size buffer
+     * The checksum covers the whole file, so it is only verified after the last record has been passed on
+     * @param file The snapshot file
+     * @param sink Receives the records in UUID order
+     * @return Number of records
+     * @throws IOException if the file cannot be read or fails validation, or the sink fails
+     */
+    public static int forEach(File file, RecordSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_RECORDS * RECORD_SIZE);
+            buffer.limit(HEADER_SIZE);
+            readFully(channel, buffer, 0);
+            int count = readHeader(buffer, channel.size());
+            long checksum = buffer.getLong(HEADER_SIZE - 8);
+            CRC32 crc = new CRC32();
+            
+            long position = HEADER_SIZE;
+            buffer.clear().limit(0);
+            for (int i = 0; i < count; i++) {
+                if (!buffer.hasRemaining()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), (long) (count - i) * RECORD_SIZE));
+                    readFully(channel, buffer, position);
+                    position += buffer.limit();
+                    crc.update(buffer.duplicate());
+                }
+                long most = buffer.getLong();
+                long least = buffer.getLong();
+                byte ordinal = buffer.get();
+                if (ColorNames.getName(ordinal) == null) {
+                    throw new IOException(String.format("invalid color ordinal %d in record %d", ordinal, i));
+                }
+                sink.accept(new UUID(most, least), ordinal);
+            }
+            
+            if (crc.getValue() != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Look up a single record by binary search, without loading the snapshot
+     * @param file The snapshot file (a missing file holds no records)
+     * @param mostSigBits High half of the UUID
+     * @param leastSigBits Low half of the UUID
+     * @return The color ordinal or {@link ColorStore#NO_COLOR}
+     * @throws IOException if the file cannot be read or has an invalid header
+     */
+    public static byte lookup(File file, long mostSigBits, long leastSigBits) throws IOException {
+        if (!file.exists()) {
+            return ColorStore.NO_COLOR;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, buffer, 0);
+            int count = readHeader(buffer, channel.size());
+            
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                buffer.clear().limit(RECORD_SIZE);
+                readFully(channel, buffer, HEADER_SIZE + (long) middle * RECORD_SIZE);
+                int result = compare(buffer.getLong(0), buffer.getLong(8), mostSigBits, leastSigBits);
+                if (result < 0) {
+                    low = middle + 1;
+                } else if (result > 0) {
+                    high = middle - 1;
+                } else {
+                    return buffer.get(16);
+                }
+            }
+            return ColorStore.NO_COLOR;
+        }
+    }
+    
+    /**
+     * Check the header of a snapshot without reading the records
+     * @param file The snapshot file
+     * @return Number of records
+     * @throws IOException if the file cannot be read or has an invalid header
+     */
+    public static int validateHeader(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, buffer, 0);
+            return readHeader(buffer, channel.size());
+        }
+    }
+    
+    /**
+     * Write a snapshot atomically (temporary file, then move into place)
+     * @param file The snapshot file
+     * @param store Colors to write
+     * @return Number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public static int write(File file, ColorStore store) throws IOException {
+        int count = store.size();
+        long[] most = new long[count];
+        long[] least = new long[count];
+        byte[] colors = new byte[count];
+        int[] index = {0};
+        store.forEach((mostSigBits, leastSigBits, color) -> {
+            most[index[0]] = mostSigBits;
+            least[index[0]] = leastSigBits;
+            colors[index[0]] = color;
+            index[0]++;
+        });
+        sort(most, least, colors, 0, count - 1);
+        
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RecordWriter writer = new RecordWriter(tempFile)) {
+            for (int i = 0; i < count; i++) {
+                writer.add(most[i], least[i], colors[i]);
+            }
+            writer.finish();
+        }
+        
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+    
+    /**
+     * Apply a set of changes to a snapshot by streaming the old file into a new one
+     * Memory use depends only on the number of changes, not on the size of the snapshot
+     * @param file The snapshot file (a missing file holds no records)
+     * @param most High halves of the changed UUIDs
+     * @param least Low halves of the changed UUIDs
+     * @param colors New color ordinals, {@link ColorStore#NO_COLOR} to remove the record
+     * @param changeCount Number of changes in the arrays
+     * @return Number of records in the new snapshot
+     * @throws IOException if the snapshot cannot be read, fails validation or cannot be written
+     */
+    public static int merge(File file, long[] most, long[] least, byte[] colors, int changeCount) throws IOException {
+        sort(most, least, colors, 0, changeCount - 1);
+        
+        File tempFile = new File(file.getPath() + ".tmp");
+        int count;
+        try (RecordWriter writer = new RecordWriter(tempFile)) {
+            int change = 0;
+            if (file.exists()) {
+                try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_RECORDS * RECORD_SIZE);
+                    buffer.limit(HEADER_SIZE);
+                    readFully(source, buffer, 0);
+                    int sourceCount = readHeader(buffer, source.size());
+                    long checksum = buffer.getLong(HEADER_SIZE - 8);
+                    CRC32 crc = new CRC32();
+                    
+                    long position = HEADER_SIZE;
+                    buffer.clear().limit(0);
+                    for (int i = 0; i < sourceCount; i++) {
+                        if (!buffer.hasRemaining()) {
+                            buffer.clear().limit((int) Math.min(buffer.capacity(), (long) (sourceCount - i) * RECORD_SIZE));
+                            readFully(source, buffer, position);
+                            position += buffer.limit();
+                            crc.update(buffer.duplicate());
+                        }
+                        long recordMost = buffer.getLong();
+                        long recordLeast = buffer.getLong();
+                        byte recordColor = buffer.get();
+                        
+                        // Emit changes that sort before this record, then the record itself unless changed
+                        while (change < changeCount && compare(most[change], least[change], recordMost, recordLeast) < 0) {
+                            writer.addChange(most[change], least[change], colors[change]);
+                            change++;
+                        }
+                        if (change < changeCount && most[change] == recordMost && least[change] == recordLeast) {
+                            writer.addChange(most[change], least[change], colors[change]);
+                            change++;
+                        } else {
+                            writer.add(recordMost, recordLeast, recordColor);
+                        }
+                    }
+                    
+                    if (crc.getValue() != checksum) {
+                        throw new IOException("checksum mismatch in source snapshot");
+                    }
+                }
+            }
+            
+            while (change < changeCount) {
+                writer.addChange(most[change], least[change], colors[change]);
+                change++;
+            }
+            count = writer.finish();
+        }
+        
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+    
+    /**
+     * Validate a header held at the start of the buffer
+     * Leaves the buffer positioned after the header
+     * @return Number of records
+     */
+    private static int readHeader(ByteBuffer buffer, long size) throws IOException {
+        if (size < HEADER_SIZE) {
+            throw new IOException("file is too short for a header");
+        }
+        buffer.position(0);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("not a NameColor snapshot (bad magic)");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(String.format("unsupported snapshot version %d", version));
+        }
+        int count = buffer.getInt();
+        buffer.getLong();
+        if (count < 0 || size != HEADER_SIZE + (long) count * RECORD_SIZE) {
+            throw new IOException(String.format("record count %d does not match file size %d", count, size));
+        }
+        return count;
+    }
+    
+    /**
+     * Fill the remaining space of a buffer from the given file position, then flip it for reading
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of file");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+    
+    /**
+     * Buffered, checksummed writer for the record section; the header is written on {@link #finish()}
+     */
+    private static class RecordWriter implements AutoCloseable {
+        
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_RECORDS * RECORD_SIZE);
+        private final CRC32 crc = new CRC32();
+        private int count;
+        
+        RecordWriter(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+        
+        void add(long most, long least, byte color) throws IOException {
+            buffer.putLong(most);
+            buffer.putLong(least);
+            buffer.put(color);
+            count++;
+            
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+        }
+        
+        /**
+         * Add a changed record, skipping removals
+         */
+        void addChange(long most, long least, byte color) throws IOException {
+            if (color != ColorStore.NO_COLOR) {
+                add(most, least, color);
+            }
+        }
+        
+        int finish() throws IOException {
+            flushBuffer();
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(crc.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+            return count;
+        }
+        
+        private void flushBuffer() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    /**
+     * Sort records by UUID (signed compare of the high then the low long), in place
+     * Quicksort on the parallel arrays, recursing into the smaller half to bound the stack
+     */
+    private static void sort(long[] most, long[] least, byte[] colors, int low, int high) {
+        while (high - low > INSERTION_SORT_THRESHOLD) {
+            int middle = (low + high) >>> 1;
+            long pivotMost = most[middle];
+            long pivotLeast = least[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(most[i], least[i], pivotMost, pivotLeast) < 0) {
+                    i++;
+                }
+                while (compare(most[j], least[j], pivotMost, pivotLeast) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(most, least, colors, i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(most, least, colors, low, j);
+                low = i;
+            } else {
+                sort(most, least, colors, i, high);
+                high = j;
+            }
+        }
+        
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(most[j - 1], least[j - 1], most[j], least[j]) > 0; j--) {
+                swap(most, least, colors, j - 1, j);
+            }
+        }
+    }
+    
+    /**
+     * Compare two UUIDs given as their halves
+     */
+    static int compare(long mostA, long leastA, long mostB, long leastB) {
+        int result = Long.compare(mostA, mostB);
+        return result != 0 ? result : Long.compare(leastA, leastB);
+    }
+    
+    private static void swap(long[] most, long[] least, byte[] colors, int a, int b) {
+        long swapMost = most[a];
+        most[a] = most[b];
+        most[b] = swapMost;
+        long swapLeast = least[a];
+        least[a] = least[b];
+        least[b] = swapLeast;
+        byte swapColor = colors[a];
+        colors[a] = colors[b];
+        colors[b] = swapColor;
+    }
+}
@@ -0,0 +1,197 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.ColorNames;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of player color changes
+ * Each change is written as one small line, so the cost of a write depends on
+ * the size of the change rather than on the number of stored players
+ *
+ * Record format (one per line):
+ *   S <uuid> <color>   - color set
+ *   R <uuid>           - color removed
+ */
+public class ChangeJournal {
+    
+    private final File file;
+    private FileOutputStream output;
+    private BufferedWriter writer;
+    private int recordCount;
+    
+    public ChangeJournal(File file) {
+        this.file = file;
+    }
+    
+    /**
+     * Callback for {@link #replay(File, ChangeConsumer, Logger)}
+     */
+    public interface ChangeConsumer {
+        /**
+         * @param uuid Player UUID
+         * @param color New color ordinal, or {@link ColorStore#NO_COLOR} if the color was removed
+         */
+        void accept(UUID uuid, byte color);
+    }
+    
+    /**
+     * Open the journal for appending
+     * @param existingRecords Number of records already in the file (from replay)
+     * @throws IOException if the file cannot be opened
+     */
+    public void open(int existingRecords) throws IOException {
+        output = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        recordCount = existingRecords;
+    }
+    
+    /**
+     * Append a change to the journal (buffered until {@link #flush(boolean)})
+     * @param uuid Player UUID
+     * @param colorName The new color, or null if the color was removed
+     * @throws IOException if the write fails
+     */
+    public void append(UUID uuid, String colorName) throws IOException {
+        if (colorName != null) {
+            writer.write("S ");
+            writer.write(uuid.toString());
+            writer.write(' ');
+            writer.write(colorName);
+        } else {
+            writer.write("R ");
+            writer.write(uuid.toString());
+        }
+        writer.write('\n');
+        recordCount++;
+    }
+    
+    /**
+     * Flush buffered records to disk
+     * @param sync true to also force the data to the storage device
+     * @throws IOException if the write fails
+     */
+    public void flush(boolean sync) throws IOException {
+        writer.flush();
+        if (sync) {
+            output.getFD().sync();
+        }
+    }
+    
+    /**
+     * Get the number of records written since the last compaction
+     * @return Record count
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+    
+    /**
+     * Move the current journal aside and start a new, empty one
+     * The rolled file stays on disk until the snapshot covering it has been written.
+     * If an earlier rolled file is still present (failed compaction), the records are
+     * appended to it instead of replacing it, so nothing is lost before a snapshot lands.
+     * If the roll fails the journal is reopened where it was, so later changes are still appended.
+     * The records are forced to disk first, whether or not batches are synced, as the compaction relies on them
+     * @param rolledFile Where to move the current journal
+     * @throws IOException if the journal cannot be rolled
+     */
+    public void roll(File rolledFile) throws IOException {
+        int records = recordCount;
+        flush(true);
+        close();
+        try {
+            if (rolledFile.exists()) {
+                try (FileOutputStream rolled = new FileOutputStream(rolledFile, true)) {
+                    Files.copy(file.toPath(), rolled);
+                    rolled.getFD().sync();
+                }
+                Files.delete(file.toPath());
+            } else {
+                try {
+                    Files.move(file.toPath(), rolledFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(file.toPath(), rolledFile.toPath());
+                }
+            }
+        } catch (IOException e) {
+            // Records copied before a failed delete are in both files; replaying them twice gives the same colors
+            open(records);
+            throw e;
+        }
+        open(0);
+    }
+    
+    /**
+     * Flush and close the journal
+     * @throws IOException if the final flush fails
+     */
+    public void close() throws IOException {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } finally {
+                writer.close();
+                writer = null;
+                output = null;
+            }
+        }
+    }
+    
+    /**
+     * Replay a journal file, passing each change to the consumer in order
+     * Malformed lines (e.g. a record torn by a crash) and unknown colors are skipped with a warning
+     * @param journalFile The journal to read
+     * @param target Receives the changes
+     * @param logger Logger for warnings
+     * @return Number of records read
+     * @throws IOException if the file cannot be read
+     */
+    public static int replay(File journalFile, ChangeConsumer target, Logger logger) throws IOException {
+        if (!journalFile.exists()) {
+            return 0;
+        }
+        
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                
+                String[] parts = line.split(" ");
+                try {
+                    if (parts.length == 3 && parts[0].equals("S")) {
+                        int ordinal = ColorNames.getOrdinal(parts[2]);
+                        if (ordinal < 0) {
+                            logger.warning(String.format("Skipping unknown color in %s: %s", journalFile.getName(), line));
+                            continue;
+                        }
+                        target.accept(UUID.fromString(parts[1]), (byte) ordinal);
+                    } else if (parts.length == 2 && parts[0].equals("R")) {
+                        target.accept(UUID.fromString(parts[1]), ColorStore.NO_COLOR);
+                    } else {
+                        logger.warning(String.format("Skipping malformed record in %s: %s", journalFile.getName(), line));
+                        continue;
+                    }
+                    records++;
+                } catch (IllegalArgumentException e) {
+                    logger.warning(String.format("Invalid UUID in %s: %s", journalFile.getName(), line));
+                }
+            }
+        }
+        return records;
+    }
+}
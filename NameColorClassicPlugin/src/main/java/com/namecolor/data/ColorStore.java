@@ -0,0 +1,464 @@
+package com.namecolor.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Open-addressing map from player UUID to a color ordinal, stored in parallel primitive arrays
+ *
+ * Keys are kept as the two UUID longs and values as one byte, so an entry costs 17 bytes per slot
+ * and lookups never allocate. Collisions are resolved with Robin Hood linear probing, which keeps
+ * probe sequences short at a high load factor, and removals use backward shifting (no tombstones).
+ * The table size is not restricted to powers of two, so it can grow in steps of 1.5x.
+ *
+ * Retained heap measured at 1,000,000 random UUIDs (heap used after full GCs, before and after filling;
+ * OpenJDK 17, 64-bit, compressed oops, serial GC):
+ *   HashMap&lt;UUID, String&gt;, one String per entry (as the YAML parser produces) - 121.9 MB
+ *   HashMap&lt;UUID, String&gt; or HashMap&lt;UUID, ChatColor&gt;, shared values         -  72.4 MB
+ *   ColorStore grown from empty                                                -  22.9 MB
+ *   ColorStore presized for the count (as snapshot loading does)               -  18.9 MB
+ *
+ * Not thread-safe; callers synchronize writes
+ */
+public class ColorStore {
+    
+    /** Returned by lookups when the UUID has no color */
+    public static final byte NO_COLOR = -1;
+    
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.9;
+    
+    // Smallest slot range worth a placement task of its own in fromRecords()
+    private static final int PARALLEL_PLACE_MIN_RANGE = 1 << 16;
+    
+    private long[] most;
+    private long[] least;
+    // Color ordinal + 1; 0 marks a free slot so fresh arrays need no filling
+    private byte[] colors;
+    private int size;
+    private int resizeAt;
+    
+    public ColorStore() {
+        this(0);
+    }
+    
+    /**
+     * Create a store sized to hold the given number of entries without growing
+     * @param expectedSize Expected number of entries
+     */
+    public ColorStore(int expectedSize) {
+        allocate(presizedCapacity(expectedSize));
+    }
+    
+    /**
+     * Build a store from decoded snapshot records, placing them in parallel
+     * The table is split into one contiguous slot range per task, and the records are bucketed by range in
+     * one pass so that each task only visits its own. A task places its records in home order, which is
+     * the layout Robin Hood insertion produces, so it needs no probing or swapping; records that would run
+     * past the end of the range are inserted afterwards on the calling thread
+     * @param most Most significant UUID bits per record (keys must be unique)
+     * @param least Least significant UUID bits per record
+     * @param colors Color ordinal per record
+     * @param homes Home slot per record, from {@link #homeSlot(long, long, int)} with {@link #presizedCapacity(int)}
+     * @param pool Pool for the placement tasks
+     * @return The store
+     */
+    static ColorStore fromRecords(long[] most, long[] least, byte[] colors, int[] homes, ForkJoinPool pool) {
+        int count = colors.length;
+        ColorStore store = new ColorStore(count);
+        int capacity = store.capacity();
+        int ranges = Math.max(1, Math.min(pool.getParallelism() * 2, capacity / PARALLEL_PLACE_MIN_RANGE));
+        
+        // Counting sort of the record indices by slot range
+        int[] rangeStarts = new int[ranges + 1];
+        for (int home : homes) {
+            rangeStarts[rangeOf(home, capacity, ranges) + 1]++;
+        }
+        for (int range = 1; range <= ranges; range++) {
+            rangeStarts[range] += rangeStarts[range - 1];
+        }
+        int[] byRange = new int[count];
+        int[] next = Arrays.copyOf(rangeStarts, ranges);
+        for (int record = 0; record < count; record++) {
+            byRange[next[rangeOf(homes[record], capacity, ranges)]++] = record;
+        }
+        
+        List<Callable<int[]>> tasks = new ArrayList<>(ranges);
+        for (int range = 0; range < ranges; range++) {
+            int from = rangeStart(range, capacity, ranges);
+            int to = rangeStart(range + 1, capacity, ranges);
+            int first = rangeStarts[range];
+            int last = rangeStarts[range + 1];
+            tasks.add(() -> store.placeRange(most, least, colors, homes, byRange, first, last, from, to));
+        }
+        
+        List<int[]> spills = new ArrayList<>(ranges);
+        for (Future<int[]> result : pool.invokeAll(tasks)) {
+            try {
+                spills.add(result.get());
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not place snapshot records", e);
+            }
+        }
+        for (int[] spilled : spills) {
+            for (int record : spilled) {
+                store.insert(most[record], least[record], (byte) (colors[record] + 1));
+            }
+        }
+        store.size = count;
+        return store;
+    }
+    
+    /**
+     * First slot of a placement range in {@link #fromRecords}
+     */
+    private static int rangeStart(int range, int capacity, int ranges) {
+        return (int) ((long) capacity * range / ranges);
+    }
+    
+    /**
+     * Placement range holding a home slot (the division can land one range short of the rounded boundary)
+     */
+    private static int rangeOf(int home, int capacity, int ranges) {
+        int range = (int) ((long) home * ranges / capacity);
+        return home >= rangeStart(range + 1, capacity, ranges) ? range + 1 : range;
+    }
+    
+    /**
+     * Place the records byRange[first, last), whose home slots are in [from, to), in home order
+     * (counting sort over the range)
+     * @return The records that did not fit before the end of the range
+     */
+    private int[] placeRange(long[] most, long[] least, byte[] colorOrdinals, int[] homes, int[] byRange, int first, int last, int from, int to) {
+        int[] starts = new int[to - from + 1];
+        for (int i = first; i < last; i++) {
+            starts[homes[byRange[i]] - from + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] ordered = new int[last - first];
+        for (int i = first; i < last; i++) {
+            int record = byRange[i];
+            ordered[starts[homes[record] - from]++] = record;
+        }
+        
+        int next = from;
+        int placed = 0;
+        for (; placed < ordered.length; placed++) {
+            int record = ordered[placed];
+            int slot = Math.max(homes[record], next);
+            if (slot >= to) {
+                break;
+            }
+            this.most[slot] = most[record];
+            this.least[slot] = least[record];
+            this.colors[slot] = (byte) (colorOrdinals[record] + 1);
+            next = slot + 1;
+        }
+        return Arrays.copyOfRange(ordered, placed, ordered.length);
+    }
+    
+    /**
+     * Home slot of a key in a table of the given capacity (for decoding records in parallel)
+     */
+    static int homeSlot(long mostSigBits, long leastSigBits, int capacity) {
+        return home(mostSigBits, leastSigBits, capacity);
+    }
+    
+    static int presizedCapacity(int expectedSize) {
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize / MAX_LOAD) + 1);
+    }
+    
+    /**
+     * Callback for {@link #forEach(EntryConsumer)}
+     */
+    public interface EntryConsumer {
+        void accept(long mostSigBits, long leastSigBits, byte color);
+    }
+    
+    /**
+     * Get the color stored for a UUID
+     * @param uuid Player UUID
+     * @return The color ordinal or {@link #NO_COLOR}
+     */
+    public byte get(UUID uuid) {
+        return get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    
+    /**
+     * Get the color stored for a UUID given as its two halves
+     * @return The color ordinal or {@link #NO_COLOR}
+     */
+    public byte get(long mostSigBits, long leastSigBits) {
+        int slot = find(mostSigBits, leastSigBits);
+        return slot < 0 ? NO_COLOR : (byte) (colors[slot] - 1);
+    }
+    
+    /**
+     * Check if a UUID has a color
+     * @param uuid Player UUID
+     * @return true if an entry exists
+     */
+    public boolean contains(UUID uuid) {
+        return find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0;
+    }
+    
+    /**
+     * Store a color for a UUID
+     * @param uuid Player UUID
+     * @param color Color ordinal (0-126)
+     * @return The previous color ordinal or {@link #NO_COLOR}
+     */
+    public byte put(UUID uuid, byte color) {
+        return put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), color);
+    }
+    
+    /**
+     * Store a color for a UUID given as its two halves
+     * @return The previous color ordinal or {@link #NO_COLOR}
+     */
+    public byte put(long mostSigBits, long leastSigBits, byte color) {
+        if (color < 0 || color == Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Color ordinal out of range: " + color);
+        }
+        
+        int existing = find(mostSigBits, leastSigBits);
+        if (existing >= 0) {
+            byte previous = (byte) (colors[existing] - 1);
+            colors[existing] = (byte) (color + 1);
+            return previous;
+        }
+        
+        if (size >= resizeAt) {
+            allocateAndRehash(capacity() + (capacity() >> 1));
+        }
+        insert(mostSigBits, leastSigBits, (byte) (color + 1));
+        size++;
+        return NO_COLOR;
+    }
+    
+    /**
+     * Remove the color for a UUID
+     * @param uuid Player UUID
+     * @return The removed color ordinal or {@link #NO_COLOR}
+     */
+    public byte remove(UUID uuid) {
+        return remove(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+    
+    /**
+     * Remove the color for a UUID given as its two halves
+     * @return The removed color ordinal or {@link #NO_COLOR}
+     */
+    public byte remove(long mostSigBits, long leastSigBits) {
+        int slot = find(mostSigBits, leastSigBits);
+        if (slot < 0) {
+            return NO_COLOR;
+        }
+        
+        byte previous = (byte) (colors[slot] - 1);
+        int capacity = capacity();
+        
+        // Backward-shift the following displaced entries into the gap
+        int next = nextSlot(slot, capacity);
+        while (colors[next] != 0 && distance(next, home(most[next], least[next], capacity), capacity) != 0) {
+            most[slot] = most[next];
+            least[slot] = least[next];
+            colors[slot] = colors[next];
+            slot = next;
+            next = nextSlot(next, capacity);
+        }
+        colors[slot] = 0;
+        size--;
+        return previous;
+    }
+    
+    /**
+     * Get the number of stored entries
+     * @return Entry count
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Remove all entries (keeps the current capacity)
+     */
+    public void clear() {
+        Arrays.fill(colors, (byte) 0);
+        size = 0;
+    }
+    
+    /**
+     * Check if storing more entries would make the next put resize the table
+     * @param additional Number of new entries about to be stored
+     * @return true if the table would grow
+     */
+    public boolean needsGrowth(int additional) {
+        return (long) size + additional > resizeAt;
+    }
+    
+    /**
+     * Check if the table is more than twice the presized capacity for its entries (after many removals)
+     * @return true if a {@link #resizedCopy(int)} for the current size would free memory
+     */
+    public boolean isOversized() {
+        return capacity() > presizedCapacity(size) * 2;
+    }
+    
+    /**
+     * Copy the entries into a new store presized for the given number of entries
+     * This store is only read, so concurrent readers can keep using it while the copy is built
+     * @param expectedSize Entries the copy should hold without growing (at least the current size)
+     * @return The copy
+     */
+    public ColorStore resizedCopy(int expectedSize) {
+        ColorStore copy = new ColorStore(Math.max(size, expectedSize));
+        for (int slot = 0; slot < colors.length; slot++) {
+            if (colors[slot] != 0) {
+                copy.insert(most[slot], least[slot], colors[slot]);
+            }
+        }
+        copy.size = size;
+        return copy;
+    }
+    
+    /**
+     * Visit every entry in table order
+     * @param consumer Callback receiving each entry
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < colors.length; slot++) {
+            if (colors[slot] != 0) {
+                consumer.accept(most[slot], least[slot], (byte) (colors[slot] - 1));
+            }
+        }
+    }
+    
+    /**
+     * Create an independent copy of this store
+     * @return A copy with the same entries
+     */
+    public ColorStore copy() {
+        ColorStore copy = new ColorStore();
+        copy.most = most.clone();
+        copy.least = least.clone();
+        copy.colors = colors.clone();
+        copy.size = size;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+    
+    /**
+     * Estimate the heap used by the table arrays
+     * @return Approximate size in bytes
+     */
+    public long estimatedMemoryBytes() {
+        return (long) capacity() * (8 + 8 + 1);
+    }
+    
+    private int capacity() {
+        return colors.length;
+    }
+    
+    /**
+     * Locate the slot holding a key
+     * @return The slot index or -1 if absent
+     */
+    private int find(long mostSigBits, long leastSigBits) {
+        int capacity = capacity();
+        int slot = home(mostSigBits, leastSigBits, capacity);
+        
+        // Robin Hood invariant: the key cannot sit further from home than the entry we are looking at
+        for (int probe = 0; probe < capacity; probe++) {
+            byte stored = colors[slot];
+            if (stored == 0) {
+                return -1;
+            }
+            if (most[slot] == mostSigBits && least[slot] == leastSigBits) {
+                return slot;
+            }
+            if (distance(slot, home(most[slot], least[slot], capacity), capacity) < probe) {
+                return -1;
+            }
+            slot = nextSlot(slot, capacity);
+        }
+        return -1;
+    }
+    
+    /**
+     * Insert a key known to be absent, displacing entries that are closer to their home slot
+     */
+    private void insert(long mostSigBits, long leastSigBits, byte storedColor) {
+        int capacity = capacity();
+        int slot = home(mostSigBits, leastSigBits, capacity);
+        int probe = 0;
+        
+        while (colors[slot] != 0) {
+            int residentProbe = distance(slot, home(most[slot], least[slot], capacity), capacity);
+            if (residentProbe < probe) {
+                long swapMost = most[slot];
+                long swapLeast = least[slot];
+                byte swapColor = colors[slot];
+                most[slot] = mostSigBits;
+                least[slot] = leastSigBits;
+                colors[slot] = storedColor;
+                mostSigBits = swapMost;
+                leastSigBits = swapLeast;
+                storedColor = swapColor;
+                probe = residentProbe;
+            }
+            slot = nextSlot(slot, capacity);
+            probe++;
+        }
+        
+        most[slot] = mostSigBits;
+        least[slot] = leastSigBits;
+        colors[slot] = storedColor;
+    }
+    
+    private void allocate(int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        colors = new byte[capacity];
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+    
+    private void allocateAndRehash(int newCapacity) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        byte[] oldColors = colors;
+        
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldColors.length; slot++) {
+            if (oldColors[slot] != 0) {
+                insert(oldMost[slot], oldLeast[slot], oldColors[slot]);
+            }
+        }
+    }
+    
+    /**
+     * Map a key to its preferred slot (multiply-shift range reduction, works for any capacity)
+     */
+    private static int home(long mostSigBits, long leastSigBits, int capacity) {
+        long hash = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) (((hash >>> 32) * capacity) >>> 32);
+    }
+    
+    private static int distance(int slot, int home, int capacity) {
+        return slot >= home ? slot - home : slot + capacity - home;
+    }
+    
+    private static int nextSlot(int slot, int capacity) {
+        return slot + 1 == capacity ? 0 : slot + 1;
+    }
+}
@@ -0,0 +1,339 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.ColorNames;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Player data file formats used by import, export and the offline migration tool
+ *
+ * Records are read and written one at a time, so memory use does not grow with the number of players.
+ * Binary output is sorted in bounded chunks that are merged into the file. Records with an invalid
+ * UUID or color are logged and skipped
+ */
+public enum DataFormat {
+    
+    /** The playerdata.yml layout: players, then a color per UUID */
+    YAML,
+    /** One "uuid,color" line per player after a header line */
+    CSV,
+    /** Sorted binary snapshot, as playerdata.dat */
+    BINARY;
+    
+    // Binary output is sorted and merged into the file this many records at a time
+    private static final int BINARY_CHUNK_RECORDS = 1 << 19;
+    
+    // Invalid records logged one by one before only counting them
+    private static final int MAX_LOGGED_INVALID = 10;
+    
+    /**
+     * Pick the format from a file extension (.yml/.yaml, .csv or .dat)
+     * @param fileName The file name
+     * @return The format or null if the extension is not known
+     */
+    public static DataFormat fromFileName(String fileName) {
+        String lowerName = fileName.toLowerCase(Locale.ROOT);
+        if (lowerName.endsWith(".yml") || lowerName.endsWith(".yaml")) {
+            return YAML;
+        }
+        if (lowerName.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lowerName.endsWith(".dat")) {
+            return BINARY;
+        }
+        return null;
+    }
+    
+    /**
+     * Stream the records of a file to a sink
+     * @param file The file to read
+     * @param sink Receives the valid records
+     * @param logger Logger for skipped records
+     * @return Number of records passed to the sink
+     * @throws IOException if the file cannot be read or the sink fails
+     */
+    public int read(File file, RecordSink sink, Logger logger) throws IOException {
+        if (this == BINARY) {
+            return BinarySnapshot.forEach(file, sink);
+        }
+        
+        InvalidRecords invalid = new InvalidRecords(file, logger);
+        int records = this == YAML ? readYaml(file, sink, invalid) : readCsv(file, sink, invalid);
+        invalid.logSummary();
+        return records;
+    }
+    
+    /**
+     * Open a writer for a file in this format
+     * Records go to a temporary file that only replaces the target on {@link RecordOutput#finish()}
+     * @param file The file to write
+     * @return The writer
+     * @throws IOException if the file cannot be created
+     */
+    public RecordOutput openWriter(File file) throws IOException {
+        return this == BINARY ? new BinaryOutput(file) : new TextOutput(file, this == YAML);
+    }
+    
+    /**
+     * Read the block-style YAML written by Bukkit: "players:", an indented "uuid:" per player and a deeper "color: name"
+     * Only the current line is held in memory, unlike a YamlConfiguration tree of the whole file
+     */
+    private static int readYaml(File file, RecordSink sink, InvalidRecords invalid) throws IOException {
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            boolean inPlayers = false;
+            int playerIndent = -1;
+            String uuidKey = null;
+            
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int indent = 0;
+                while (indent < line.length() && line.charAt(indent) == ' ') {
+                    indent++;
+                }
+                if (indent == line.length() || line.charAt(indent) == '#') {
+                    continue;
+                }
+                String content = line.trim();
+                
+                if (indent == 0) {
+                    inPlayers = content.startsWith("players:");
+                    playerIndent = -1;
+                    uuidKey = null;
+                } else if (!inPlayers) {
+                    continue;
+                } else if (playerIndent < 0 || indent <= playerIndent) {
+                    // A player key
+                    playerIndent = indent;
+                    uuidKey = content.endsWith(":") ? unquote(content.substring(0, content.length() - 1)) : null;
+                    if (uuidKey == null) {
+                        invalid.add(content);
+                    }
+                } else if (uuidKey != null && content.startsWith("color:")) {
+                    if (accept(uuidKey, unquote(content.substring("color:".length())), sink, invalid)) {
+                        records++;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * Read "uuid,color" lines; blank lines, # comments and a "uuid,color" header are skipped
+     */
+    private static int readCsv(File file, RecordSink sink, InvalidRecords invalid) throws IOException {
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.regionMatches(true, 0, "uuid,", 0, 5)) {
+                    continue;
+                }
+                
+                int comma = line.indexOf(',');
+                if (comma < 0) {
+                    invalid.add(line);
+                } else if (accept(line.substring(0, comma).trim(), line.substring(comma + 1).trim(), sink, invalid)) {
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+    
+    /**
+     * Validate one record and pass it on
+     * @return true if the record was valid
+     */
+    private static boolean accept(String uuidString, String colorName, RecordSink sink, InvalidRecords invalid) throws IOException {
+        int ordinal = ColorNames.getOrdinal(colorName);
+        if (ordinal < 0) {
+            invalid.add(String.format("invalid color '%s' for %s", colorName, uuidString));
+            return false;
+        }
+        
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(uuidString);
+        } catch (IllegalArgumentException e) {
+            invalid.add(String.format("invalid UUID %s", uuidString));
+            return false;
+        }
+        sink.accept(uuid, (byte) ordinal);
+        return true;
+    }
+    
+    /**
+     * Strip surrounding whitespace and YAML quotes
+     */
+    private static String unquote(String value) {
+        value = value.trim();
+        if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+    
+    /**
+     * Writer for a data file; closing it without finishing discards the partial file
+     */
+    public interface RecordOutput extends RecordSink, Closeable {
+        
+        /**
+         * Complete the file and move it into place
+         * @return Number of records in the file
+         * @throws IOException if the file cannot be completed
+         */
+        int finish() throws IOException;
+    }
+    
+    /**
+     * YAML or CSV output, one record per line
+     */
+    private static final class TextOutput implements RecordOutput {
+        
+        private final File file;
+        private final File tempFile;
+        private final boolean yaml;
+        private final BufferedWriter writer;
+        private boolean finished;
+        private int count;
+        
+        TextOutput(File file, boolean yaml) throws IOException {
+            this.file = file;
+            this.tempFile = new File(file.getPath() + ".tmp");
+            this.yaml = yaml;
+            this.writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8);
+            writer.write(yaml ? "players:\n" : "uuid,color\n");
+        }
+        
+        @Override
+        public void accept(UUID uuid, byte color) throws IOException {
+            if (yaml) {
+                writer.write("  ");
+                writer.write(uuid.toString());
+                writer.write(":\n    color: ");
+            } else {
+                writer.write(uuid.toString());
+                writer.write(',');
+            }
+            writer.write(ColorNames.getName(color));
+            writer.write('\n');
+            count++;
+        }
+        
+        @Override
+        public int finish() throws IOException {
+            writer.close();
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return count;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                writer.close();
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+    }
+    
+    /**
+     * Binary output: records are collected in a bounded store (a later record for the same UUID wins),
+     * then sorted and merged into the partial snapshot whenever the store is full
+     */
+    private static final class BinaryOutput implements RecordOutput {
+        
+        private final File file;
+        private final File partFile;
+        private final ColorStore chunk = new ColorStore(BINARY_CHUNK_RECORDS);
+        private final long[] most = new long[BINARY_CHUNK_RECORDS];
+        private final long[] least = new long[BINARY_CHUNK_RECORDS];
+        private final byte[] colors = new byte[BINARY_CHUNK_RECORDS];
+        private boolean finished;
+        
+        BinaryOutput(File file) throws IOException {
+            this.file = file;
+            this.partFile = new File(file.getPath() + ".part");
+            Files.deleteIfExists(partFile.toPath());
+        }
+        
+        @Override
+        public void accept(UUID uuid, byte color) throws IOException {
+            chunk.put(uuid, color);
+            if (chunk.size() >= BINARY_CHUNK_RECORDS) {
+                mergeChunk();
+            }
+        }
+        
+        private int mergeChunk() throws IOException {
+            int[] index = {0};
+            chunk.forEach((mostSigBits, leastSigBits, color) -> {
+                most[index[0]] = mostSigBits;
+                least[index[0]] = leastSigBits;
+                colors[index[0]] = color;
+                index[0]++;
+            });
+            chunk.clear();
+            return BinarySnapshot.merge(partFile, most, least, colors, index[0]);
+        }
+        
+        @Override
+        public int finish() throws IOException {
+            int count = mergeChunk();
+            Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return count;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                Files.deleteIfExists(partFile.toPath());
+            }
+        }
+    }
+    
+    /**
+     * Counts skipped records, logging the first few
+     */
+    private static final class InvalidRecords {
+        
+        private final File file;
+        private final Logger logger;
+        private int count;
+        
+        InvalidRecords(File file, Logger logger) {
+            this.file = file;
+            this.logger = logger;
+        }
+        
+        void add(String reason) {
+            count++;
+            if (count <= MAX_LOGGED_INVALID) {
+                logger.warning(String.format("Skipping invalid record in %s: %s", file.getName(), reason));
+            }
+        }
+        
+        void logSummary() {
+            if (count > MAX_LOGGED_INVALID) {
+                logger.warning(String.format("Skipped %d invalid records in %s", count, file.getName()));
+            }
+        }
+    }
+}
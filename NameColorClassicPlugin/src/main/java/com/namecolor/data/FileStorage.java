@@ -0,0 +1,481 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.ColorNames;
+import com.namecolor.utils.PluginMetrics;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * File-based storage: a playerdata.yml or binary playerdata.dat snapshot, optionally with a change journal
+ *
+ * In journal mode each batch is appended to playerdata.journal and kept in an in-memory overlay
+ * until the journal is compacted, which applies the overlay to the snapshot in one pass. Each batch is
+ * forced to disk unless storage.journal-sync is off; the journal is always forced before it is rolled,
+ * and the new snapshot before the rolled journal is deleted.
+ * Without the journal, plain YAML keeps the document in memory and rewrites it per batch
+ * (the classic behaviour), while plain binary merges each batch into playerdata.dat.
+ * Single-record lookups binary search the binary format (sorted records); YAML answers them from the
+ * document in memory or, in journal mode, by reading playerdata.yml through, so only binary supports lazy-load
+ */
+public class FileStorage implements PlayerStorage {
+    
+    private final File dataFolder;
+    private final Logger logger;
+    private final PluginMetrics metrics;
+    private final boolean binaryFormat;
+    private final boolean journalEnabled;
+    private final boolean journalSync;
+    private final int compactThreshold;
+    
+    private final File snapshotFile;
+    private final File journalFile;
+    private final File compactingFile;
+    private ChangeJournal journal;
+    
+    // Only kept in plain YAML mode
+    private YamlConfiguration yamlTree;
+    
+    // Changes not yet applied to the snapshot (NO_COLOR = removed); the merging part is being applied
+    private Map<UUID, Byte> overlay = new HashMap<>();
+    private Map<UUID, Byte> mergingOverlay;
+    
+    // Held while the snapshot is being rewritten
+    private final Object compactionLock = new Object();
+    
+    /**
+     * @param journalSync Force each journal batch to disk; without it a power loss or OS crash can lose the
+     *                    batches written since the last roll (a server crash loses nothing)
+     */
+    public FileStorage(File dataFolder, Logger logger, PluginMetrics metrics, boolean binaryFormat, boolean journalEnabled, boolean journalSync, int compactThreshold) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.binaryFormat = binaryFormat;
+        this.journalEnabled = journalEnabled;
+        this.journalSync = journalSync;
+        this.compactThreshold = Math.max(1, compactThreshold);
+        this.snapshotFile = new File(dataFolder, binaryFormat ? "playerdata.dat" : "playerdata.yml");
+        this.journalFile = new File(dataFolder, JournaledSnapshot.JOURNAL_FILE);
+        this.compactingFile = new File(dataFolder, JournaledSnapshot.COMPACTING_FILE);
+    }
+    
+    @Override
+    public void open() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                setupSnapshot();
+                
+                // Rebuild the overlay from any journal on disk
+                overlay = new HashMap<>();
+                mergingOverlay = null;
+                ChangeJournal.replay(compactingFile, overlay::put, logger);
+                int journalRecords = ChangeJournal.replay(journalFile, overlay::put, logger);
+                
+                if (journalEnabled) {
+                    journal = new ChangeJournal(journalFile);
+                    journal.open(journalRecords);
+                }
+            }
+            
+            if (journalEnabled) {
+                // A leftover compacting file means the last compaction did not finish, so it is redone now
+                if (compactingFile.exists()) {
+                    compactJournal();
+                }
+            } else if (!overlay.isEmpty() || journalFile.exists() || compactingFile.exists()) {
+                // Journal left behind by journal mode - fold it into the snapshot once
+                writeChanges(overlay);
+                overlay = new HashMap<>();
+                Files.deleteIfExists(compactingFile.toPath());
+                Files.deleteIfExists(journalFile.toPath());
+            }
+        }
+    }
+    
+    /**
+     * Create, migrate or validate the snapshot file
+     */
+    private void setupSnapshot() {
+        if (binaryFormat) {
+            File yamlFile = new File(dataFolder, "playerdata.yml");
+            if (!snapshotFile.exists() && yamlFile.exists()) {
+                migrateYamlSnapshot(yamlFile);
+            }
+            if (snapshotFile.exists()) {
+                try {
+                    BinarySnapshot.validateHeader(snapshotFile);
+                } catch (IOException e) {
+                    quarantineSnapshot(e);
+                }
+            }
+            return;
+        }
+        
+        if (!snapshotFile.exists()) {
+            try {
+                snapshotFile.createNewFile();
+            } catch (IOException e) {
+                logger.severe(String.format("Could not create playerdata.yml file: %s", e.getMessage()));
+            }
+        }
+        
+        yamlTree = journalEnabled ? null : YamlConfiguration.loadConfiguration(snapshotFile);
+    }
+    
+    /**
+     * One-time migration of playerdata.yml to the binary playerdata.dat
+     * The YAML file is kept as playerdata.yml.migrated
+     * @param yamlFile The existing playerdata.yml
+     */
+    private void migrateYamlSnapshot(File yamlFile) {
+        try {
+            ColorStore colors = readYamlSnapshot(yamlFile);
+            int written = BinarySnapshot.write(snapshotFile, colors);
+            Files.move(yamlFile.toPath(), new File(dataFolder, "playerdata.yml.migrated").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            logger.info(String.format("Migrated %d player colors from playerdata.yml to playerdata.dat", written));
+        } catch (IOException e) {
+            logger.severe(String.format("Could not migrate playerdata.yml to playerdata.dat: %s", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Stream a YAML snapshot into a new color store, without building a YamlConfiguration tree of it
+     */
+    private ColorStore readYamlSnapshot(File yamlFile) throws IOException {
+        ColorStore store = new ColorStore();
+        DataFormat.YAML.read(yamlFile, store::put, logger);
+        return store;
+    }
+    
+    /**
+     * Read the players section of a YAML document already in memory into a new color store
+     */
+    private ColorStore readYamlSnapshot(ConfigurationSection root) {
+        ConfigurationSection playersSection = root.getConfigurationSection("players");
+        if (playersSection == null) {
+            return new ColorStore();
+        }
+        
+        Set<String> keys = playersSection.getKeys(false);
+        ColorStore store = new ColorStore(keys.size());
+        for (String uuidString : keys) {
+            try {
+                UUID uuid = UUID.fromString(uuidString);
+                String color = playersSection.getString(uuidString + ".color");
+                if (color == null) {
+                    continue;
+                }
+                
+                int ordinal = ColorNames.getOrdinal(color);
+                if (ordinal >= 0) {
+                    store.put(uuid, (byte) ordinal);
+                } else {
+                    logger.warning(String.format("Invalid color '%s' in playerdata.yml for %s", color, uuidString));
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warning(String.format("Invalid UUID in playerdata.yml: %s", uuidString));
+            }
+        }
+        return store;
+    }
+    
+    /**
+     * Move an unreadable playerdata.dat aside rather than letting the next write replace it
+     */
+    private void quarantineSnapshot(IOException cause) {
+        File corruptFile = new File(dataFolder, "playerdata.dat.corrupt-" + System.currentTimeMillis());
+        logger.severe(String.format("Could not read playerdata.dat (%s) - moving it to %s", cause.getMessage(), corruptFile.getName()));
+        if (!snapshotFile.renameTo(corruptFile)) {
+            logger.severe("Could not move playerdata.dat aside");
+        }
+    }
+    
+    @Override
+    public ColorStore loadAll() throws IOException {
+        return loadAll(null);
+    }
+    
+    /**
+     * Load every stored color; the binary snapshot is decoded in parallel chunks, YAML is read sequentially
+     * @param pool Pool for parallel parsing, or null to load on the calling thread
+     */
+    @Override
+    public ColorStore loadAll(ForkJoinPool pool) throws IOException {
+        synchronized (compactionLock) {
+            ColorStore store;
+            if (binaryFormat) {
+                store = new ColorStore();
+                if (snapshotFile.exists()) {
+                    try {
+                        store = BinarySnapshot.read(snapshotFile, pool);
+                    } catch (IOException e) {
+                        quarantineSnapshot(e);
+                    }
+                }
+            } else {
+                store = yamlTree != null ? readYamlSnapshot(yamlTree) : readYamlSnapshot(snapshotFile);
+            }
+            
+            synchronized (this) {
+                if (mergingOverlay != null) {
+                    applyChanges(store, mergingOverlay);
+                }
+                applyChanges(store, overlay);
+            }
+            return store;
+        }
+    }
+    
+    /**
+     * Apply journaled changes to a color store
+     */
+    private static void applyChanges(ColorStore store, Map<UUID, Byte> changes) {
+        for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+            if (change.getValue() == ColorStore.NO_COLOR) {
+                store.remove(change.getKey());
+            } else {
+                store.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+    
+    @Override
+    public void forEach(RecordSink sink) throws IOException {
+        synchronized (compactionLock) {
+            Map<UUID, Byte> changes;
+            synchronized (this) {
+                changes = new HashMap<>();
+                if (mergingOverlay != null) {
+                    changes.putAll(mergingOverlay);
+                }
+                changes.putAll(overlay);
+            }
+            
+            // Plain YAML mode rewrites the file on every batch, so the file is as current as the document
+            JournaledSnapshot.forEachRecord(snapshotFile, binaryFormat, changes, sink, logger);
+        }
+    }
+    
+    @Override
+    public boolean supportsLookup() {
+        return binaryFormat;
+    }
+    
+    @Override
+    public byte get(UUID uuid) throws IOException {
+        // Changes not yet in the snapshot take precedence over the file
+        synchronized (this) {
+            Byte pending = overlay.get(uuid);
+            if (pending == null && mergingOverlay != null) {
+                pending = mergingOverlay.get(uuid);
+            }
+            if (pending != null) {
+                return pending;
+            }
+            
+            if (yamlTree != null) {
+                int ordinal = ColorNames.getOrdinal(yamlTree.getString("players." + uuid + ".color"));
+                return ordinal >= 0 ? (byte) ordinal : ColorStore.NO_COLOR;
+            }
+        }
+        
+        if (binaryFormat) {
+            return BinarySnapshot.lookup(snapshotFile, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        }
+        return scanYamlSnapshot(uuid);
+    }
+    
+    /**
+     * Find one player by reading playerdata.yml through (journal mode keeps no document in memory)
+     */
+    private byte scanYamlSnapshot(UUID uuid) throws IOException {
+        byte[] found = {ColorStore.NO_COLOR};
+        synchronized (compactionLock) {
+            if (snapshotFile.exists()) {
+                DataFormat.YAML.read(snapshotFile, (record, color) -> {
+                    if (record.equals(uuid)) {
+                        found[0] = color;
+                    }
+                }, logger);
+            }
+        }
+        return found[0];
+    }
+    
+    @Override
+    public void upsert(UUID uuid, byte color) throws IOException {
+        batchUpsert(Collections.singletonMap(uuid, color));
+    }
+    
+    @Override
+    public void delete(UUID uuid) throws IOException {
+        batchUpsert(Collections.singletonMap(uuid, ColorStore.NO_COLOR));
+    }
+    
+    @Override
+    public void batchUpsert(Map<UUID, Byte> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        
+        if (!journalEnabled) {
+            synchronized (compactionLock) {
+                writeChanges(changes);
+            }
+            return;
+        }
+        
+        boolean compactNow;
+        synchronized (this) {
+            long start = System.nanoTime();
+            for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+                journal.append(change.getKey(), ColorNames.getName(change.getValue()));
+            }
+            long appended = System.nanoTime();
+            journal.flush(journalSync);
+            metrics.record(PluginMetrics.Timer.SAVE_SERIALIZE, appended - start);
+            metrics.record(PluginMetrics.Timer.SAVE_WRITE, System.nanoTime() - appended);
+            overlay.putAll(changes);
+            compactNow = journal.getRecordCount() >= compactThreshold;
+        }
+        
+        if (compactNow) {
+            compactJournal();
+        }
+    }
+    
+    /**
+     * Fold the journal into the snapshot now, dropping the records of removed players from both
+     * Without the journal every write already rewrites the snapshot, so there is nothing to do
+     */
+    @Override
+    public void compact() {
+        if (journalEnabled) {
+            compactJournal();
+        }
+    }
+    
+    /**
+     * Fold the journal into the snapshot
+     * The journal is rolled and the overlay frozen under the lock; the snapshot is rewritten outside it.
+     * The rolled journal is only deleted once the new snapshot is safely on disk
+     */
+    private void compactJournal() {
+        synchronized (compactionLock) {
+            Map<UUID, Byte> changes;
+            synchronized (this) {
+                try {
+                    journal.roll(compactingFile);
+                } catch (IOException e) {
+                    logger.severe(String.format("Could not roll playerdata.journal file: %s", e.getMessage()));
+                    return;
+                }
+                
+                // Changes left over from a failed compaction are still in the compacting file, so apply them again
+                if (mergingOverlay != null) {
+                    mergingOverlay.putAll(overlay);
+                } else {
+                    mergingOverlay = overlay;
+                }
+                overlay = new HashMap<>();
+                changes = mergingOverlay;
+            }
+            
+            try {
+                writeChanges(changes);
+                synchronized (this) {
+                    mergingOverlay = null;
+                }
+                Files.deleteIfExists(compactingFile.toPath());
+            } catch (IOException e) {
+                logger.severe(String.format("Could not compact playerdata.journal into %s: %s", snapshotFile.getName(), e.getMessage()));
+            }
+        }
+    }
+    
+    /**
+     * Apply changes to the snapshot file (caller holds the compaction lock)
+     * Binary snapshots are streamed into a new file; YAML documents are updated and rewritten
+     */
+    private void writeChanges(Map<UUID, Byte> changes) throws IOException {
+        long start = System.nanoTime();
+        if (binaryFormat) {
+            int count = changes.size();
+            long[] most = new long[count];
+            long[] least = new long[count];
+            byte[] colors = new byte[count];
+            int index = 0;
+            for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+                most[index] = change.getKey().getMostSignificantBits();
+                least[index] = change.getKey().getLeastSignificantBits();
+                colors[index] = change.getValue();
+                index++;
+            }
+            long prepared = System.nanoTime();
+            BinarySnapshot.merge(snapshotFile, most, least, colors, count);
+            metrics.record(PluginMetrics.Timer.SAVE_SERIALIZE, prepared - start);
+            metrics.record(PluginMetrics.Timer.SAVE_WRITE, System.nanoTime() - prepared);
+            return;
+        }
+        
+        synchronized (this) {
+            YamlConfiguration tree = yamlTree != null ? yamlTree : YamlConfiguration.loadConfiguration(snapshotFile);
+            for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+                if (change.getValue() == ColorStore.NO_COLOR) {
+                    tree.set("players." + change.getKey().toString(), null);
+                } else {
+                    tree.set("players." + change.getKey().toString() + ".color", ColorNames.getName(change.getValue()));
+                }
+            }
+            
+            // Serialize YAML right before writing to capture ALL changes
+            String yamlContent = tree.saveToString();
+            
+            // Validate YAML content before writing
+            if (yamlContent == null || yamlContent.trim().isEmpty()) {
+                throw new IOException("Attempted to save empty/null YAML content - aborting to prevent data loss");
+            }
+            
+            // Write via a temporary file forced to disk before the move, so a crash never leaves a torn snapshot
+            // and a compaction never deletes the rolled journal before the snapshot holding it is durable
+            long serialized = System.nanoTime();
+            File tempFile = new File(dataFolder, "playerdata.yml.tmp");
+            try (FileOutputStream output = new FileOutputStream(tempFile)) {
+                output.write(yamlContent.getBytes(StandardCharsets.UTF_8));
+                output.getFD().sync();
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            metrics.record(PluginMetrics.Timer.SAVE_SERIALIZE, serialized - start);
+            metrics.record(PluginMetrics.Timer.SAVE_WRITE, System.nanoTime() - serialized);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        
+        try {
+            journal.flush(true);
+        } finally {
+            journal.close();
+            journal = null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.namecolor.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Reads a file storage snapshot together with the journal changes not yet compacted into it
+ * Shared by FileStorage and the offline PlayerDataTool, so it must not use Bukkit classes
+ */
+final class JournaledSnapshot {
+    
+    /** Changes appended since the last compaction */
+    static final String JOURNAL_FILE = "playerdata.journal";
+    /** Journal rolled aside by a compaction that has not finished yet */
+    static final String COMPACTING_FILE = "playerdata.journal.compacting";
+    
+    private JournaledSnapshot() {
+    }
+    
+    /**
+     * Replay both journals of a data folder, oldest first
+     * Bounded by storage.compact-after, so holding the changes in memory is fine
+     * @param dataFolder Folder holding the journals (missing journals hold no changes)
+     * @param logger Logger for skipped records
+     * @return The latest change per player (NO_COLOR = removed)
+     * @throws IOException if a journal cannot be read
+     */
+    static Map<UUID, Byte> readJournals(File dataFolder, Logger logger) throws IOException {
+        Map<UUID, Byte> changes = new HashMap<>();
+        ChangeJournal.replay(new File(dataFolder, COMPACTING_FILE), changes::put, logger);
+        ChangeJournal.replay(new File(dataFolder, JOURNAL_FILE), changes::put, logger);
+        return changes;
+    }
+    
+    /**
+     * Stream a snapshot file with changes applied on top, passing each player on once
+     * @param snapshotFile playerdata.dat or playerdata.yml (a missing file holds no records)
+     * @param binaryFormat true if the snapshot is binary
+     * @param changes Changes not yet in the snapshot (NO_COLOR = removed)
+     * @param sink Receives the records
+     * @param logger Logger for skipped records
+     * @return Number of records passed on
+     * @throws IOException if the snapshot cannot be read or the sink fails
+     */
+    static int forEachRecord(File snapshotFile, boolean binaryFormat, Map<UUID, Byte> changes, RecordSink sink, Logger logger) throws IOException {
+        int[] count = {0};
+        if (snapshotFile.exists()) {
+            DataFormat format = binaryFormat ? DataFormat.BINARY : DataFormat.YAML;
+            format.read(snapshotFile, (uuid, color) -> {
+                if (!changes.containsKey(uuid)) {
+                    sink.accept(uuid, color);
+                    count[0]++;
+                }
+            }, logger);
+        }
+        
+        for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+            if (change.getValue() != ColorStore.NO_COLOR) {
+                sink.accept(change.getKey(), change.getValue());
+                count[0]++;
+            }
+        }
+        return count[0];
+    }
+}
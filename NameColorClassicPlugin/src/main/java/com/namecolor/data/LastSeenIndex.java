@@ -0,0 +1,234 @@
+package com.namecolor.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Day each player was last seen, used to prune players who stopped playing (lastseen.dat)
+ *
+ * Days are stored as a char of days since 1970-01-01 (enough until 2149) next to the two UUID longs
+ * in parallel arrays, so an entry costs 18 bytes per slot. Linear probing; entries are only removed
+ * in bulk, by rebuilding the table at its new size.
+ * Updated on the main thread and read by the pruning job, so every method synchronizes
+ *
+ * File layout (big-endian): magic "NCLS" (int), version (int), record count (int), then per record
+ * UUID most significant bits (long), least significant bits (long), day (char)
+ */
+public class LastSeenIndex {
+    
+    private static final int MAGIC = 0x4E434C53; // "NCLS"
+    private static final int VERSION = 1;
+    
+    private static final int MIN_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.75;
+    
+    // Day 0 (1970-01-01) never occurs, so it marks a free slot
+    private static final char FREE = 0;
+    
+    private long[] most;
+    private long[] least;
+    private char[] days;
+    private int size;
+    
+    public LastSeenIndex() {
+        allocate(MIN_CAPACITY);
+    }
+    
+    /**
+     * Get the current day in the index's format
+     * @return Days since 1970-01-01
+     */
+    public static char today() {
+        return (char) LocalDate.now().toEpochDay();
+    }
+    
+    /**
+     * Get the day a player was last seen
+     * @param uuid Player UUID
+     * @return Days since 1970-01-01, or 0 if the player is not in the index
+     */
+    public synchronized char get(UUID uuid) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return days[slot];
+    }
+    
+    /**
+     * Record that a player was seen on a day
+     * @param uuid Player UUID
+     * @param day Days since 1970-01-01
+     */
+    public synchronized void touch(UUID uuid, char day) {
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), day);
+    }
+    
+    /**
+     * Drop every player last seen before a day, shrinking the table to fit the rest
+     * @param cutoff First day that is kept
+     * @return Number of players dropped
+     */
+    public synchronized int removeOlderThan(char cutoff) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        char[] oldDays = days;
+        
+        int kept = 0;
+        for (char day : oldDays) {
+            if (day >= cutoff) {
+                kept++;
+            }
+        }
+        int removed = size - kept;
+        
+        allocate(capacityFor(kept));
+        size = 0;
+        for (int slot = 0; slot < oldDays.length; slot++) {
+            if (oldDays[slot] >= cutoff) {
+                put(oldMost[slot], oldLeast[slot], oldDays[slot]);
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Get the number of players in the index
+     * @return Entry count
+     */
+    public synchronized int size() {
+        return size;
+    }
+    
+    /**
+     * Write the index through a temporary file, so a crash never leaves a torn file
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for (int slot = 0; slot < days.length; slot++) {
+                if (days[slot] != FREE) {
+                    out.writeLong(most[slot]);
+                    out.writeLong(least[slot]);
+                    out.writeChar(days[slot]);
+                }
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Read an index written by {@link #save(File)}
+     * @param file The file to read (a missing file is an empty index)
+     * @return The index
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static LastSeenIndex load(File file) throws IOException {
+        LastSeenIndex index = new LastSeenIndex();
+        if (!file.exists()) {
+            return index;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a NameColor last-seen file (bad magic)");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("unsupported last-seen version %d", version));
+            }
+            int count = in.readInt();
+            if (count < 0 || count > (file.length() - 12) / (8 + 8 + 2)) {
+                throw new IOException(String.format("record count %d does not match file size %d", count, file.length()));
+            }
+            
+            index.allocate(capacityFor(count));
+            for (int i = 0; i < count; i++) {
+                long mostSigBits = in.readLong();
+                long leastSigBits = in.readLong();
+                char day = in.readChar();
+                if (day != FREE) {
+                    index.put(mostSigBits, leastSigBits, day);
+                }
+            }
+        }
+        return index;
+    }
+    
+    private void put(long mostSigBits, long leastSigBits, char day) {
+        int slot = find(mostSigBits, leastSigBits);
+        if (days[slot] == FREE) {
+            if (size + 1 > days.length * MAX_LOAD) {
+                rehash(days.length * 2);
+                slot = find(mostSigBits, leastSigBits);
+            }
+            most[slot] = mostSigBits;
+            least[slot] = leastSigBits;
+            size++;
+        }
+        days[slot] = day;
+    }
+    
+    /**
+     * Locate the slot holding a key, or the free slot where it would go
+     */
+    private int find(long mostSigBits, long leastSigBits) {
+        int mask = days.length - 1;
+        int slot = home(mostSigBits, leastSigBits) & mask;
+        while (days[slot] != FREE && (most[slot] != mostSigBits || least[slot] != leastSigBits)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void rehash(int capacity) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        char[] oldDays = days;
+        
+        allocate(capacity);
+        for (int slot = 0; slot < oldDays.length; slot++) {
+            if (oldDays[slot] != FREE) {
+                int target = find(oldMost[slot], oldLeast[slot]);
+                most[target] = oldMost[slot];
+                least[target] = oldLeast[slot];
+                days[target] = oldDays[slot];
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        days = new char[capacity];
+    }
+    
+    /**
+     * Smallest power-of-two capacity that holds the given number of entries below the load factor
+     */
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (entries > capacity * MAX_LOAD) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+    
+    private static int home(long mostSigBits, long leastSigBits) {
+        long hash = mostSigBits * 0x9E3779B97F4A7C15L ^ leastSigBits;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
@@ -0,0 +1,152 @@
+package com.namecolor.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded color cache used in lazy-load mode
+ *
+ * Online players are pinned and never evicted; everyone else lives in an access-ordered
+ * LRU map capped at a fixed size. Values are color ordinals, with {@link ColorStore#NO_COLOR}
+ * recording that a player is known to have no color (so misses are cached too)
+ */
+public class LazyColorCache {
+    
+    // Approximate heap per cached player: linked map entry, UUID and table slot (Byte values are shared)
+    private static final int ENTRY_BYTES = 88;
+    
+    private final Map<UUID, Byte> pinned = new ConcurrentHashMap<>();
+    private final LinkedHashMap<UUID, Byte> recent;
+    
+    /**
+     * @param maxRecent Maximum number of offline players to keep
+     */
+    public LazyColorCache(int maxRecent) {
+        this.recent = new LinkedHashMap<UUID, Byte>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Byte> eldest) {
+                return size() > maxRecent;
+            }
+        };
+    }
+    
+    /**
+     * Get a cached color
+     * @param uuid Player UUID
+     * @return The color ordinal, {@link ColorStore#NO_COLOR} if known to have none, or null if not cached
+     */
+    public Byte get(UUID uuid) {
+        Byte color = pinned.get(uuid);
+        if (color != null) {
+            return color;
+        }
+        synchronized (recent) {
+            return recent.get(uuid);
+        }
+    }
+    
+    /**
+     * Update a cached color (pinned entries stay pinned)
+     * @param uuid Player UUID
+     * @param color Color ordinal or {@link ColorStore#NO_COLOR}
+     */
+    public void put(UUID uuid, byte color) {
+        if (pinned.replace(uuid, color) != null) {
+            return;
+        }
+        synchronized (recent) {
+            recent.put(uuid, color);
+        }
+    }
+    
+    /**
+     * Update a color only if the player is already cached (bulk changes, so they do not flush the LRU section)
+     * @param uuid Player UUID
+     * @param color Color ordinal or {@link ColorStore#NO_COLOR}
+     */
+    public void replace(UUID uuid, byte color) {
+        if (pinned.replace(uuid, color) != null) {
+            return;
+        }
+        synchronized (recent) {
+            recent.replace(uuid, color);
+        }
+    }
+    
+    /**
+     * Cache a color fetched from storage, unless a newer value was cached meanwhile
+     * @param uuid Player UUID
+     * @param color Color ordinal or {@link ColorStore#NO_COLOR}
+     */
+    public void putIfAbsent(UUID uuid, byte color) {
+        if (pinned.containsKey(uuid)) {
+            return;
+        }
+        synchronized (recent) {
+            recent.putIfAbsent(uuid, color);
+        }
+    }
+    
+    /**
+     * Pin an online player so their entry is never evicted
+     * @param uuid Player UUID
+     * @param color Color ordinal or {@link ColorStore#NO_COLOR}
+     */
+    public void pin(UUID uuid, byte color) {
+        pinned.put(uuid, color);
+        synchronized (recent) {
+            recent.remove(uuid);
+        }
+    }
+    
+    /**
+     * Unpin a player who went offline, moving their entry to the LRU section
+     * @param uuid Player UUID
+     */
+    public void unpin(UUID uuid) {
+        Byte color = pinned.remove(uuid);
+        if (color != null) {
+            synchronized (recent) {
+                recent.put(uuid, color);
+            }
+        }
+    }
+    
+    /**
+     * Get the UUIDs of all pinned (online) players
+     * @return Live view of the pinned UUIDs
+     */
+    public Set<UUID> getPinned() {
+        return pinned.keySet();
+    }
+    
+    /**
+     * Drop all unpinned entries
+     */
+    public void clearRecent() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+    
+    /**
+     * Estimate the heap used by the cached entries (map entry, UUID and table slot per player)
+     * @return Approximate size in bytes
+     */
+    public long estimatedMemoryBytes() {
+        return (long) size() * ENTRY_BYTES;
+    }
+    
+    /**
+     * Get the number of cached entries
+     * @return Pinned plus recent entry count
+     */
+    public int size() {
+        synchronized (recent) {
+            return pinned.size() + recent.size();
+        }
+    }
+}
@@ -1,77 +1,566 @@
 package com.namecolor.data;
 
-import org.bukkit.Bukkit;
-import org.bukkit.configuration.ConfigurationSection;
+import com.namecolor.utils.ColorHandler;
+import com.namecolor.utils.PluginMetrics;
+import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 
 /**
  * Manages persistent storage of player color preferences with in-memory caching
+ *
+ * Persistence goes through a {@link PlayerStorage} backend selected by storage.backend:
+ * the playerdata.yml / playerdata.dat files (optionally journaled) or an embedded SQL database.
+ * Only changed players are ever handed to the backend: changes are collected in a dirty set
+ * and written behind by a single writer thread, either once storage.flush-interval-ms has passed
+ * since the first unwritten change or as soon as storage.flush-max-dirty players are dirty.
+ * In lazy-load mode only online and recently used players are held in memory;
+ * everyone else is looked up in the backend on demand.
+ * With storage.async-startup the backend is opened and loaded on a background thread, so server
+ * startup does not wait for it; async pre-login waits briefly for {@link #awaitReady()}.
+ * With storage.prune-after-days the day each player was last seen is tracked (lastseen.dat), and a
+ * background job resets the colors of players not seen for that long and compacts the backend.
+ * With storage.sync-interval-ms several servers share one SQLite file: each polls its change feed
+ * and applies only the changes the others made since its last poll
  */
 public class PlayerDataManager {
     
     private final JavaPlugin plugin;
-    private File dataFile;
-    private FileConfiguration dataConfig;
+    private final PluginMetrics metrics;
+    private PlayerStorage storage;
     
-    // In-memory cache for fast lookups
-    private final Map<UUID, String> colorCache = new HashMap<>();
+    // In-memory cache for fast lookups (UUID -> ChatColor ordinal)
+    // Readers never take a lock: they read optimistically under cacheLock and retry if a write overlapped.
+    // Writers hold this and the write lock for single entries only; tables are grown, trimmed and reloaded
+    // as new stores built beside the live one and published with a reference swap
+    private volatile ColorStore colorCache = new ColorStore();
+    private final StampedLock cacheLock = new StampedLock();
     
-    // Track if an async save is already pending
-    private volatile boolean saveScheduled = false;
+    // While the writer thread copies the cache into a larger table the live store is left untouched:
+    // changes go here instead and readers look here first (null when no grow is running, written under this)
+    private volatile Map<UUID, Byte> growingChanges;
+    
+    // Batches release the cache write lock after this many entries, so readers retry for a short time only
+    private static final int CACHE_WRITE_CHUNK = 256;
+    
+    // Longest the shutdown flush may take before giving up on the writer thread
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_SECONDS = 10;
+    
+    // Dirty set: players changed since the last flush with their latest color (NO_COLOR = removed).
+    // The value is kept because lazy-load mode may evict the player from the cache before the flush.
+    // The writing part is being handed to the backend
+    private Map<UUID, Byte> pendingChanges = new LinkedHashMap<>();
+    private Map<UUID, Byte> writingChanges = Collections.emptyMap();
+    
+    // Write-behind: one writer thread, at most one flush queued at a time (guarded by this)
+    private final ScheduledExecutorService writer;
+    private final long flushIntervalMs;
+    private final int flushMaxDirty;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean immediateFlush;
+    
+    // Held while changes are written, so batches reach the backend one at a time and in order
+    private final Object writeLock = new Object();
+    
+    // Lookups hold the read side; a reload holds the write side while the backend is reopened
+    private final ReadWriteLock storageLock = new ReentrantReadWriteLock();
+    
+    // Lazy-load mode: bounded cache in front of the backend
+    private final boolean lazyLoad;
+    private LazyColorCache lazyCache;
+    
+    // Completed once the startup load has published the cache (immediately without async startup),
+    // or exceptionally if it failed; nothing is read from or written to the backend before it succeeded
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private final long startupWaitMs;
+    
+    // Pruning: last-seen day per player (null when pruning is off) and the players online right now
+    private final int pruneAfterDays;
+    private volatile LastSeenIndex lastSeen;
+    private final Set<UUID> onlinePlayers = ConcurrentHashMap.newKeySet();
+    
+    // Delay before the first pruning run, so it does not compete with startup
+    private static final long FIRST_PRUNE_DELAY_MINUTES = 5;
+    
+    // Cross-server sync: sequence of the last feed change applied (guarded by writeLock),
+    // and who is told about players changed by other servers
+    private final long syncIntervalMs;
+    private long syncSequence;
+    private volatile Consumer<Collection<UUID>> remoteChangeListener;
     
     public PlayerDataManager(JavaPlugin plugin) {
+        this(plugin, new PluginMetrics());
+    }
+    
+    /**
+     * @param plugin The plugin
+     * @param metrics Receives load and save timings and counters
+     */
+    public PlayerDataManager(JavaPlugin plugin, PluginMetrics metrics) {
         this.plugin = plugin;
-        setupDataFile();
-        loadCache();
+        this.metrics = metrics;
+        
+        // Lazy-load mode has nothing to preload, so it always opens the backend on the calling thread
+        boolean lazy = plugin.getConfig().getBoolean("storage.lazy-load", false);
+        boolean asyncStartup = plugin.getConfig().getBoolean("storage.async-startup", false) && !lazy;
+        if (!asyncStartup) {
+            openStorage();
+        }
+        if (lazy && !storage.supportsLookup()) {
+            plugin.getLogger().warning("storage.lazy-load requires storage.format: binary or an SQL backend - loading all player colors instead");
+            lazy = false;
+        }
+        this.lazyLoad = lazy;
+        if (lazyLoad) {
+            lazyCache = new LazyColorCache(Math.max(0, plugin.getConfig().getInt("storage.cache-size", 5000)));
+        }
+        
+        this.flushIntervalMs = Math.max(0, plugin.getConfig().getLong("storage.flush-interval-ms", 1000));
+        this.flushMaxDirty = Math.max(1, plugin.getConfig().getInt("storage.flush-max-dirty", 500));
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NameColor-Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.startupWaitMs = Math.max(0, plugin.getConfig().getLong("storage.startup-wait-ms", 5000));
+        
+        this.syncIntervalMs = Math.max(0, plugin.getConfig().getLong("storage.sync-interval-ms", 0));
+        if (syncIntervalMs > 0) {
+            writer.scheduleWithFixedDelay(this::pollChanges, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        
+        this.pruneAfterDays = Math.max(0, plugin.getConfig().getInt("storage.prune-after-days", 0));
+        if (pruneAfterDays > 0) {
+            long intervalMinutes = Math.max(1, plugin.getConfig().getLong("storage.prune-interval-hours", 24)) * 60;
+            writer.scheduleWithFixedDelay(this::prune, FIRST_PRUNE_DELAY_MINUTES, intervalMinutes, TimeUnit.MINUTES);
+        }
+        
+        if (!asyncStartup) {
+            loadLastSeen();
+            loadCache(null);
+            ready.complete(null);
+            return;
+        }
+        
+        Thread loader = new Thread(this::loadAsync, "NameColor-Loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    /**
+     * Loader thread: open the backend and load it with a fork-join pool, then mark the manager ready
+     * Changes made in the meantime stay in the dirty set and are applied on top of the loaded colors.
+     * A failed load leaves the backend alone for good, so a partial cache never overwrites stored colors
+     */
+    private void loadAsync() {
+        int threads = plugin.getConfig().getInt("storage.load-threads", 0);
+        ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        try {
+            synchronized (writeLock) {
+                openStorage();
+                loadLastSeen();
+                loadCache(pool);
+            }
+        } catch (RuntimeException | Error e) {
+            plugin.getLogger().severe(String.format("Could not load player colors: %s - color changes will not be saved until the server restarts", e));
+            ready.completeExceptionally(e);
+            return;
+        } finally {
+            pool.shutdown();
+        }
+        
+        ready.complete(null);
+        // Flushes are skipped while loading, so write the changes made meanwhile
+        synchronized (this) {
+            if (!pendingChanges.isEmpty()) {
+                scheduleFlush();
+            }
+        }
+    }
+    
+    /**
+     * Read lastseen.dat if pruning is on (an unreadable file starts the clock again for everyone)
+     */
+    private void loadLastSeen() {
+        if (pruneAfterDays == 0) {
+            return;
+        }
+        
+        try {
+            lastSeen = LastSeenIndex.load(new File(plugin.getDataFolder(), "lastseen.dat"));
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not read lastseen.dat file: %s", e.getMessage()));
+            lastSeen = new LastSeenIndex();
+        }
+    }
+    
+    /**
+     * Write lastseen.dat if pruning is on
+     */
+    private void saveLastSeen() {
+        if (lastSeen == null) {
+            return;
+        }
+        
+        try {
+            lastSeen.save(new File(plugin.getDataFolder(), "lastseen.dat"));
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not save lastseen.dat file: %s", e.getMessage()));
+        }
     }
     
     /**
-     * Initialize the playerdata.yml file
+     * Create and open the configured storage backend
+     * An SQL backend that cannot be opened falls back to file storage, so colors are never silently dropped
      */
-    private void setupDataFile() {
-        dataFile = new File(plugin.getDataFolder(), "playerdata.yml");
+    private void openStorage() {
+        FileConfiguration config = plugin.getConfig();
+        String backend = config.getString("storage.backend", "file").toLowerCase(Locale.ROOT);
         
-        if (!dataFile.exists()) {
+        boolean sync = config.getLong("storage.sync-interval-ms", 0) > 0;
+        if (backend.equals("sqlite") || backend.equals("h2")) {
+            SqlStorage.Dialect dialect = backend.equals("h2") ? SqlStorage.Dialect.H2 : SqlStorage.Dialect.SQLITE;
+            String fileName = config.getString("storage.sql-file", "playerdata.db");
+            // An absolute path lets several servers share one database
+            File databaseFile = new File(fileName);
+            if (!databaseFile.isAbsolute()) {
+                databaseFile = new File(plugin.getDataFolder(), fileName);
+            }
+            storage = new SqlStorage(databaseFile, dialect, plugin.getLogger(), metrics, sync);
             try {
-                dataFile.createNewFile();
+                storage.open();
+                if (sync && !storage.supportsChangeFeed()) {
+                    plugin.getLogger().warning("storage.sync-interval-ms requires storage.backend: sqlite - not syncing with other servers");
+                }
+                return;
             } catch (IOException e) {
-                plugin.getLogger().severe(String.format("Could not create playerdata.yml file: %s", e.getMessage()));
+                plugin.getLogger().severe(String.format("Could not open %s database %s: %s - using file storage instead", backend, fileName, e.getMessage()));
             }
+        } else if (!backend.equals("file")) {
+            plugin.getLogger().warning(String.format("Unknown storage.backend '%s' - using file storage", backend));
+        }
+        if (sync) {
+            plugin.getLogger().warning("storage.sync-interval-ms requires storage.backend: sqlite - not syncing with other servers");
         }
         
-        dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+        boolean binaryFormat = config.getString("storage.format", "yaml").equalsIgnoreCase("binary");
+        // Lazy-load mode always journals; the journal is what keeps unmerged changes visible to lookups
+        boolean journalEnabled = config.getBoolean("storage.lazy-load", false) || config.getBoolean("storage.journal", false);
+        storage = new FileStorage(plugin.getDataFolder(), plugin.getLogger(), metrics, binaryFormat, journalEnabled,
+                config.getBoolean("storage.journal-sync", true), config.getInt("storage.compact-after", 1000));
+        try {
+            storage.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not open player data storage: %s", e.getMessage()));
+        }
     }
     
     /**
      * Load all player colors into memory cache
+     * In lazy-load mode only the online (pinned) players are refreshed from storage
+     * @param pool Pool for parsing the data in parallel, or null to load on the calling thread
+     */
+    private void loadCache(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        // Read before loading: changes made meanwhile are polled again, which is harmless
+        if (syncIntervalMs > 0 && storage.supportsChangeFeed()) {
+            try {
+                syncSequence = storage.getChangeSequence();
+            } catch (IOException e) {
+                plugin.getLogger().severe(String.format("Could not read the change feed: %s", e.getMessage()));
+            }
+        }
+        if (lazyLoad) {
+            lazyCache.clearRecent();
+            for (UUID uuid : lazyCache.getPinned()) {
+                lazyCache.pin(uuid, fetch(uuid));
+            }
+            metrics.record(PluginMetrics.Timer.LOAD, System.nanoTime() - start);
+            plugin.getLogger().info("Lazy-loading player colors from storage");
+            return;
+        }
+        
+        ColorStore loaded;
+        try {
+            loaded = storage.loadAll(pool);
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not load player colors: %s", e.getMessage()));
+            loaded = new ColorStore();
+        }
+        publishCache(loaded);
+        metrics.record(PluginMetrics.Timer.LOAD, System.nanoTime() - start);
+        plugin.getLogger().info(String.format("Loaded %d player colors into cache", loaded.size()));
+    }
+    
+    /**
+     * Replace the cache with a fully loaded store in one step, so readers see either the old or the new one
+     * Changes made while the store was loading are not in storage yet, so they are applied first
+     */
+    private synchronized void publishCache(ColorStore loaded) {
+        for (Map<UUID, Byte> changes : Arrays.asList(writingChanges, pendingChanges)) {
+            applyChanges(loaded, changes);
+        }
+        
+        // A grow still copying the old store is dropped; its changes are covered by storage and the dirty set
+        swapCache(loaded);
+        growingChanges = null;
+    }
+    
+    /**
+     * Apply changes to a store that is not published yet
+     * @param changes Color per player, {@link ColorStore#NO_COLOR} to remove
+     */
+    private static void applyChanges(ColorStore store, Map<UUID, Byte> changes) {
+        for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+            if (change.getValue() == ColorStore.NO_COLOR) {
+                store.remove(change.getKey());
+            } else {
+                store.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Publish a new cache store; readers of the old one fail validation and retry on the new one
+     */
+    private void swapCache(ColorStore store) {
+        long stamp = cacheLock.writeLock();
+        try {
+            colorCache = store;
+        } finally {
+            cacheLock.unlockWrite(stamp);
+        }
+    }
+    
+    /**
+     * Make room for new entries before they are written, so no put resizes the live table (caller holds this)
+     * The larger copy is built on the writer thread, so a command never waits for it. Until it is published
+     * the live store stays as it is and changes are collected in growingChanges
+     * @param additional Upper bound of entries about to be added
+     */
+    private void reserveCache(int additional) {
+        ColorStore cache = colorCache;
+        if (growingChanges != null || !cache.needsGrowth(additional)) {
+            return;
+        }
+        if (!writer.isShutdown()) {
+            try {
+                // The task needs this to publish, so it cannot miss the changes collected from here on
+                writer.execute(() -> growCache(cache, additional));
+                growingChanges = new ConcurrentHashMap<>();
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shut down since the check
+            }
+        }
+        // Shutting down: no command is waiting for the lock any more
+        swapCache(cache.resizedCopy(grownCapacity(cache, additional)));
+    }
+    
+    /**
+     * Copy the cache into a larger table and publish it with the changes made meanwhile (writer thread)
+     * @param source The live store when the grow started, which is not written until it is replaced
+     * @param additional Entries the grow was started for
      */
-    private void loadCache() {
-        colorCache.clear();
-        ConfigurationSection playersSection = dataConfig.getConfigurationSection("players");
+    private void growCache(ColorStore source, int additional) {
+        ColorStore grown;
+        try {
+            grown = source.resizedCopy(grownCapacity(source, additional));
+        } catch (RuntimeException | OutOfMemoryError e) {
+            plugin.getLogger().severe(String.format("Could not grow the player color cache: %s", e));
+            grown = null;
+        }
         
-        if (playersSection != null) {
-            for (String uuidString : playersSection.getKeys(false)) {
+        synchronized (this) {
+            if (colorCache != source) {
+                // Replaced by a reload meanwhile
+                return;
+            }
+            long stamp = grown == null ? cacheLock.writeLock() : 0;
+            try {
+                applyChanges(grown == null ? source : grown, growingChanges);
+            } finally {
+                if (grown == null) {
+                    cacheLock.unlockWrite(stamp);
+                }
+            }
+            if (grown != null) {
+                swapCache(grown);
+            }
+            growingChanges = null;
+        }
+    }
+    
+    /**
+     * Capacity for a grown cache, with headroom so the next grow is far off
+     */
+    private static int grownCapacity(ColorStore cache, int additional) {
+        long target = ((long) cache.size() + additional) * 3 / 2;
+        return (int) Math.min(target, Integer.MAX_VALUE / 2);
+    }
+    
+    /**
+     * Get a player's color from the cache, or from the changes made while it grows (caller holds this)
+     */
+    private byte cachedColor(UUID uuid) {
+        Map<UUID, Byte> changes = growingChanges;
+        Byte changed = changes == null ? null : changes.get(uuid);
+        return changed != null ? changed : colorCache.get(uuid);
+    }
+    
+    /**
+     * Set or remove a player's color in the cache (caller holds this and the cache write lock)
+     * @param color Color ordinal, {@link ColorStore#NO_COLOR} to remove
+     */
+    private void writeCache(UUID uuid, byte color) {
+        Map<UUID, Byte> changes = growingChanges;
+        if (changes != null) {
+            changes.put(uuid, color);
+        } else if (color == ColorStore.NO_COLOR) {
+            colorCache.remove(uuid);
+        } else {
+            colorCache.put(uuid, color);
+        }
+    }
+    
+    /**
+     * Wait up to storage.startup-wait-ms for the startup load (async pre-login)
+     * @return true if the player colors are loaded
+     */
+    public boolean awaitReady() {
+        return awaitLoad(startupWaitMs);
+    }
+    
+    /**
+     * Check without waiting whether the startup load has finished and succeeded
+     */
+    private boolean isLoaded() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+    
+    /**
+     * Wait up to a timeout for the startup load
+     * @return false if it failed or is still running
+     */
+    private boolean awaitLoad(long timeoutMs) {
+        try {
+            ready.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Run an action once the startup load has succeeded (right away if it already has, never if it failed)
+     * @param action Runs on the loader thread or the calling thread
+     */
+    public void whenReady(Runnable action) {
+        ready.thenRun(action);
+    }
+    
+    /**
+     * Read the cache from any thread without taking a lock
+     * An optimistic read that overlapped a write is retried. Writes hold the lock for one entry (or one
+     * chunk of a batch) and never resize the live table, so a retry only waits out a few puts
+     */
+    private byte readCache(UUID uuid) {
+        Map<UUID, Byte> changes = growingChanges;
+        Byte changed = changes == null ? null : changes.get(uuid);
+        if (changed != null) {
+            return changed;
+        }
+        while (true) {
+            long stamp = cacheLock.tryOptimisticRead();
+            if (stamp != 0) {
                 try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    String color = playersSection.getString(uuidString + ".color");
-                    if (color != null) {
-                        colorCache.put(uuid, color);
+                    byte color = colorCache.get(uuid);
+                    if (cacheLock.validate(stamp)) {
+                        return color;
                     }
-                } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning(String.format("Invalid UUID in playerdata.yml: %s", uuidString));
+                } catch (RuntimeException e) {
+                    // Torn read of an entry being moved; validation would have failed anyway
                 }
             }
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * Look a player up in storage, bypassing the cache (lazy-load mode)
+     * Changes not yet written to the backend take precedence over it
+     * @param uuid Player UUID
+     * @return The color ordinal or {@link ColorStore#NO_COLOR}
+     */
+    private byte fetch(UUID uuid) {
+        synchronized (this) {
+            Byte pending = pendingChanges.get(uuid);
+            if (pending == null) {
+                pending = writingChanges.get(uuid);
+            }
+            if (pending != null) {
+                return pending;
+            }
+        }
+        
+        storageLock.readLock().lock();
+        try {
+            return storage.get(uuid);
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not read %s from storage: %s", uuid, e.getMessage()));
+            return ColorStore.NO_COLOR;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Get a player's color ordinal from the cache, loading it from storage on a lazy-load cache miss
+     */
+    private byte lookup(UUID uuid) {
+        if (!lazyLoad) {
+            return readCache(uuid);
         }
         
-        plugin.getLogger().info(String.format("Loaded %d player colors into cache", colorCache.size()));
+        Byte cached = lazyCache.get(uuid);
+        if (cached != null) {
+            return cached;
+        }
+        
+        byte color = fetch(uuid);
+        lazyCache.putIfAbsent(uuid, color);
+        return color;
     }
     
     /**
@@ -80,16 +569,28 @@ public class PlayerDataManager {
      * @param colorName The name of the color
      */
     public void savePlayerColor(UUID uuid, String colorName) {
+        int ordinal = ColorHandler.getColorOrdinal(colorName);
+        if (ordinal < 0) {
+            plugin.getLogger().warning(String.format("Ignoring invalid color '%s' for %s", colorName, uuid));
+            return;
+        }
+        
         synchronized (this) {
             // Update cache
-            colorCache.put(uuid, colorName);
-            
-            // Update config
-            dataConfig.set("players." + uuid.toString() + ".color", colorName);
+            if (lazyLoad) {
+                lazyCache.put(uuid, (byte) ordinal);
+            } else {
+                reserveCache(1);
+                long stamp = cacheLock.writeLock();
+                try {
+                    writeCache(uuid, (byte) ordinal);
+                } finally {
+                    cacheLock.unlockWrite(stamp);
+                }
+            }
+            markDirty(uuid, (byte) ordinal);
+            scheduleFlush();
         }
-        
-        // Save asynchronously
-        saveAsync();
     }
     
     /**
@@ -99,7 +600,63 @@ public class PlayerDataManager {
      */
     public String getPlayerColor(UUID uuid) {
         // Read from cache instead of disk
-        return colorCache.get(uuid);
+        return ColorHandler.getColorNameByOrdinal(lookup(uuid));
+    }
+    
+    /**
+     * Get a player's saved color as a ChatColor
+     * In lazy-load mode a cache miss reads from storage, so this is also how
+     * AsyncPlayerPreLoginEvent warms the cache before the player joins
+     * @param uuid Player UUID
+     * @return The ChatColor or null if not found
+     */
+    public ChatColor getPlayerChatColor(UUID uuid) {
+        return ColorHandler.getColorByOrdinal(lookup(uuid));
+    }
+    
+    /**
+     * Keep a joining player's color in memory for as long as they are online (lazy-load mode)
+     * @param uuid Player UUID
+     * @param color The player's color, or null if they have none
+     */
+    public void pinPlayer(UUID uuid, ChatColor color) {
+        if (lazyLoad) {
+            lazyCache.pin(uuid, color != null ? (byte) color.ordinal() : ColorStore.NO_COLOR);
+        }
+    }
+    
+    /**
+     * Let a player who left be evicted from the cache again (lazy-load mode)
+     * @param uuid Player UUID
+     */
+    public void unpinPlayer(UUID uuid) {
+        if (lazyLoad) {
+            lazyCache.unpin(uuid);
+        }
+    }
+    
+    /**
+     * Record that a player joined (last-seen tracking, when pruning is on)
+     * @param uuid Player UUID
+     */
+    public void playerJoined(UUID uuid) {
+        LastSeenIndex index = lastSeen;
+        if (index != null) {
+            onlinePlayers.add(uuid);
+            index.touch(uuid, LastSeenIndex.today());
+        }
+    }
+    
+    /**
+     * Record that a player quit (last-seen tracking, when pruning is on)
+     * @param uuid Player UUID
+     */
+    public void playerQuit(UUID uuid) {
+        LastSeenIndex index = lastSeen;
+        if (index != null) {
+            onlinePlayers.remove(uuid);
+            index.touch(uuid, LastSeenIndex.today());
+        }
     }
     
     /**
@@ -108,7 +665,7 @@ public class PlayerDataManager {
      * @return true if the player has a saved color
      */
     public boolean hasPlayerColor(UUID uuid) {
-        return colorCache.containsKey(uuid);
+        return lookup(uuid) != ColorStore.NO_COLOR;
     }
     
     /**
@@ -118,91 +675,559 @@ public class PlayerDataManager {
     public void removePlayerColor(UUID uuid) {
         synchronized (this) {
             // Remove from cache
-            colorCache.remove(uuid);
-            
-            // Remove from config
-            dataConfig.set("players." + uuid.toString(), null);
+            if (lazyLoad) {
+                lazyCache.put(uuid, ColorStore.NO_COLOR);
+            } else {
+                long stamp = cacheLock.writeLock();
+                try {
+                    writeCache(uuid, ColorStore.NO_COLOR);
+                } finally {
+                    cacheLock.unlockWrite(stamp);
+                }
+            }
+            markDirty(uuid, ColorStore.NO_COLOR);
+            scheduleFlush();
+        }
+    }
+    
+    /**
+     * Set or reset the color of many players as one batch
+     * The cache is updated in a single pass under one lock, and the changes are written by one
+     * immediate flush instead of one per player. Safe to call from any thread
+     * @param uuids Players to change
+     * @param colorName The color name, or null to reset their colors
+     * @return The number of players whose color changed
+     */
+    public int setPlayerColors(Collection<UUID> uuids, String colorName) {
+        byte color = ColorStore.NO_COLOR;
+        if (colorName != null) {
+            int ordinal = ColorHandler.getColorOrdinal(colorName);
+            if (ordinal < 0) {
+                plugin.getLogger().warning(String.format("Ignoring invalid bulk color '%s'", colorName));
+                return 0;
+            }
+            color = (byte) ordinal;
         }
         
-        // Save asynchronously
-        saveAsync();
+        int changed = 0;
+        synchronized (this) {
+            boolean adds = !lazyLoad && color != ColorStore.NO_COLOR;
+            if (adds) {
+                reserveCache(Math.min(uuids.size(), CACHE_WRITE_CHUNK));
+            }
+            long stamp = lazyLoad ? 0 : cacheLock.writeLock();
+            try {
+                int inChunk = 0;
+                for (UUID uuid : uuids) {
+                    if (applyBatchChange(uuid, color)) {
+                        changed++;
+                    }
+                    if (!lazyLoad && ++inChunk == CACHE_WRITE_CHUNK) {
+                        stamp = releaseChunk(stamp, adds);
+                        inChunk = 0;
+                    }
+                }
+            } finally {
+                if (!lazyLoad) {
+                    cacheLock.unlockWrite(stamp);
+                }
+            }
+            
+            if (changed > 0) {
+                scheduleFlush(true);
+            }
+        }
+        return changed;
     }
     
     /**
-     * Save the data file asynchronously to avoid blocking main thread
-     * Uses debouncing to prevent multiple concurrent writes
+     * Set the colors of many players as one batch (import), like {@link #setPlayerColors(Collection, String)}
+     * @param colors Color ordinal per player, {@link ColorStore#NO_COLOR} to reset
+     * @return The number of players whose color changed
      */
-    private void saveAsync() {
+    public int importPlayerColors(Map<UUID, Byte> colors) {
+        int changed = 0;
         synchronized (this) {
-            // If a save is already scheduled, skip this one
-            if (saveScheduled) {
-                return;
+            if (!lazyLoad) {
+                reserveCache(Math.min(colors.size(), CACHE_WRITE_CHUNK));
+            }
+            long stamp = lazyLoad ? 0 : cacheLock.writeLock();
+            try {
+                int inChunk = 0;
+                for (Map.Entry<UUID, Byte> entry : colors.entrySet()) {
+                    if (applyBatchChange(entry.getKey(), entry.getValue())) {
+                        changed++;
+                    }
+                    if (!lazyLoad && ++inChunk == CACHE_WRITE_CHUNK) {
+                        stamp = releaseChunk(stamp, true);
+                        inChunk = 0;
+                    }
+                }
+            } finally {
+                if (!lazyLoad) {
+                    cacheLock.unlockWrite(stamp);
+                }
             }
             
-            saveScheduled = true;
+            if (changed > 0) {
+                scheduleFlush(true);
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Let waiting readers through between two chunks of a batch (caller holds this)
+     * @param stamp Stamp of the held write lock
+     * @param adds Whether the next chunk may add entries, so room is reserved for it first
+     * @return The stamp of the reacquired write lock
+     */
+    private long releaseChunk(long stamp, boolean adds) {
+        cacheLock.unlockWrite(stamp);
+        if (adds) {
+            reserveCache(CACHE_WRITE_CHUNK);
+        }
+        return cacheLock.writeLock();
+    }
+    
+    /**
+     * Apply one change of a batch (caller holds this and, unless in lazy-load mode, the cache write lock)
+     * In lazy-load mode only cached players are updated, so a large batch does not evict the LRU cache;
+     * for the others the pending change takes precedence over storage
+     * @return true if the player's color changed
+     */
+    private boolean applyBatchChange(UUID uuid, byte color) {
+        if (lazyLoad) {
+            Byte cached = lazyCache.get(uuid);
+            if (cached != null && cached == color) {
+                return false;
+            }
+            lazyCache.replace(uuid, color);
+        } else {
+            if (cachedColor(uuid) == color) {
+                return false;
+            }
+            writeCache(uuid, color);
+        }
+        markDirty(uuid, color);
+        return true;
+    }
+    
+    /**
+     * Add a change to the dirty set (caller holds the lock)
+     * A change replacing an unsaved one is counted as coalesced: only the latest is written
+     */
+    private void markDirty(UUID uuid, byte color) {
+        if (pendingChanges.put(uuid, color) != null) {
+            metrics.increment(PluginMetrics.Counter.SAVE_COALESCED, 1);
+        }
+        // A color given to an offline player (bulk, import) should not be pruned right away
+        LastSeenIndex index = lastSeen;
+        if (index != null && color != ColorStore.NO_COLOR) {
+            index.touch(uuid, LastSeenIndex.today());
+        }
+    }
+    
+    /**
+     * Set who is told about players whose color another server changed (sync mode)
+     * @param listener Called on the writer thread with the changed players, or null after a full reload
+     */
+    public void setRemoteChangeListener(Consumer<Collection<UUID>> listener) {
+        this.remoteChangeListener = listener;
+    }
+    
+    /**
+     * Writer thread: apply the changes other servers wrote to the shared feed since the last poll
+     * A player with a local change not yet written keeps it; it reaches the feed with a later sequence
+     */
+    private void pollChanges() {
+        // Polled again on the next run once the load has finished
+        if (!isLoaded()) {
+            return;
         }
         
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        try {
+            Map<UUID, Byte> changes = new LinkedHashMap<>();
+            synchronized (writeLock) {
+                if (!storage.supportsChangeFeed()) {
+                    return;
+                }
+                
+                long lastSequence;
+                storageLock.readLock().lock();
+                try {
+                    lastSequence = storage.readChanges(syncSequence, changes::put);
+                } finally {
+                    storageLock.readLock().unlock();
+                }
+                
+                if (lastSequence < 0) {
+                    plugin.getLogger().warning("Changes from other servers are no longer in the change feed - reloading all player colors");
+                    reload();
+                    notifyRemoteChanges(null);
+                    return;
+                }
+                syncSequence = lastSequence;
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            
+            List<UUID> applied = new ArrayList<>(changes.size());
             synchronized (this) {
+                if (!lazyLoad) {
+                    reserveCache(Math.min(changes.size(), CACHE_WRITE_CHUNK));
+                }
+                long stamp = lazyLoad ? 0 : cacheLock.writeLock();
                 try {
-                    // Serialize YAML right before writing to capture ALL changes
-                    final String yamlContent;
-                    yamlContent = dataConfig.saveToString();
-                    
-                    // Validate YAML content before writing
-                    if (yamlContent == null || yamlContent.trim().isEmpty()) {
-                        plugin.getLogger().severe("Attempted to save empty/null YAML content - aborting to prevent data loss");
-                        saveScheduled = false;  // Must reset flag on early return
-                        return;
+                    int inChunk = 0;
+                    for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+                        if (!lazyLoad && ++inChunk == CACHE_WRITE_CHUNK) {
+                            stamp = releaseChunk(stamp, true);
+                            inChunk = 0;
+                        }
+                        UUID uuid = change.getKey();
+                        if (pendingChanges.containsKey(uuid) || writingChanges.containsKey(uuid)) {
+                            continue;
+                        }
+                        if (lazyLoad) {
+                            lazyCache.replace(uuid, change.getValue());
+                        } else {
+                            writeCache(uuid, change.getValue());
+                        }
+                        applied.add(uuid);
                     }
-                    
-                    // Write to main file first
-                    java.nio.file.Files.write(dataFile.toPath(), yamlContent.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-                } catch (IOException e) {
-                    plugin.getLogger().severe(String.format("Could not save playerdata.yml file: %s", e.getMessage()));
                 } finally {
-                    // Allow next save to proceed
-                    saveScheduled = false;
+                    if (!lazyLoad) {
+                        cacheLock.unlockWrite(stamp);
+                    }
                 }
             }
-        });
+            notifyRemoteChanges(applied);
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not read changes from other servers: %s", e.getMessage()));
+        } catch (RuntimeException e) {
+            // Would cancel the periodic poll
+            plugin.getLogger().severe(String.format("Could not read changes from other servers: %s", e));
+        }
+    }
+    
+    private void notifyRemoteChanges(Collection<UUID> uuids) {
+        Consumer<Collection<UUID>> listener = remoteChangeListener;
+        if (listener != null) {
+            listener.accept(uuids);
+        }
     }
     
     /**
-     * Save the data file synchronously (used on shutdown)
+     * Writer thread: reset the colors of players not seen for storage.prune-after-days, then compact
+     * the backend and shrink the cache, so memory and file size follow the active players.
+     * Players with a color but no last-seen day (tracked since before pruning was on) start the clock now
      */
-    public void saveSync() {
-        // Wait for any pending async save to complete (max 5 seconds)
-        int attempts = 0;
-        while (saveScheduled && attempts < 50) {
+    private void prune() {
+        if (!isLoaded()) {
+            return;
+        }
+        
+        try {
+            char today = LastSeenIndex.today();
+            char cutoff = (char) Math.max(1, today - pruneAfterDays);
+            for (UUID uuid : onlinePlayers) {
+                lastSeen.touch(uuid, today);
+            }
+            
+            // The backend has to hold every color before it is scanned
+            if (!writePendingChanges()) {
+                return;
+            }
+            
+            List<UUID> expired = new ArrayList<>();
+            storageLock.readLock().lock();
             try {
-                Thread.sleep(100);
-                attempts++;
-            } catch (InterruptedException e) {
-                break;
+                storage.forEach((uuid, color) -> {
+                    char seen = lastSeen.get(uuid);
+                    if (seen == 0) {
+                        lastSeen.touch(uuid, today);
+                    } else if (seen < cutoff) {
+                        expired.add(uuid);
+                    }
+                });
+            } finally {
+                storageLock.readLock().unlock();
             }
+            
+            // Skip anyone who came back while the backend was scanned
+            expired.removeIf(uuid -> lastSeen.get(uuid) >= cutoff);
+            int pruned = expired.isEmpty() ? 0 : setPlayerColors(expired, null);
+            int forgotten = lastSeen.removeOlderThan(cutoff);
+            
+            if (pruned > 0) {
+                writePendingChanges();
+                storageLock.readLock().lock();
+                try {
+                    storage.compact();
+                } finally {
+                    storageLock.readLock().unlock();
+                }
+                
+                if (!lazyLoad) {
+                    synchronized (this) {
+                        if (growingChanges == null && colorCache.isOversized()) {
+                            swapCache(colorCache.resizedCopy(colorCache.size()));
+                        }
+                    }
+                }
+                plugin.getLogger().info(String.format("Pruned the colors of %d players not seen for %d days", pruned, pruneAfterDays));
+            }
+            if (pruned > 0 || forgotten > 0) {
+                saveLastSeen();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not prune player colors: %s", e.getMessage()));
+        } catch (RuntimeException e) {
+            // Would cancel the periodic job
+            plugin.getLogger().severe(String.format("Could not prune player colors: %s", e));
+        }
+    }
+    
+    /**
+     * Stream every saved color to a sink (export) without loading them all into memory
+     * Pending changes are written first; changes made while the export runs may or may not be included.
+     * Blocks on storage, so call it off the main thread
+     * @param sink Receives one record per player
+     * @return Number of records exported
+     * @throws IOException if the data cannot be read or the sink fails
+     */
+    public int exportData(RecordSink sink) throws IOException {
+        if (!isLoaded()) {
+            throw new IOException("player colors are not loaded");
+        }
+        if (!writePendingChanges()) {
+            throw new IOException("pending changes could not be saved");
         }
         
-        if (saveScheduled) {
-            plugin.getLogger().warning("Async save still pending during shutdown - forcing synchronous save");
+        int[] count = {0};
+        storageLock.readLock().lock();
+        try {
+            storage.forEach((uuid, color) -> {
+                sink.accept(uuid, color);
+                count[0]++;
+            });
+        } finally {
+            storageLock.readLock().unlock();
+        }
+        return count[0];
+    }
+    
+    /**
+     * Queue a flush for the dirty set on the writer thread (caller holds the lock)
+     * A change starts the flush interval; reaching the dirty threshold moves the flush forward to now
+     */
+    private void scheduleFlush() {
+        scheduleFlush(false);
+    }
+    
+    /**
+     * Queue a flush for the dirty set, optionally skipping the flush interval (caller holds the lock)
+     * @param now Write the dirty set right away, as if the dirty threshold had been reached
+     */
+    private void scheduleFlush(boolean now) {
+        if (writer.isShutdown()) {
+            return;
         }
         
+        boolean overThreshold = now || pendingChanges.size() >= flushMaxDirty;
+        if (scheduledFlush != null) {
+            if (!overThreshold || immediateFlush || !scheduledFlush.cancel(false)) {
+                return;
+            }
+        }
+        
+        immediateFlush = overThreshold;
+        scheduledFlush = writer.schedule(this::flush, overThreshold ? 0 : flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Writer thread: write the current dirty set
+     * Changes made while it is written start the next flush interval
+     */
+    private void flush() {
         synchronized (this) {
+            scheduledFlush = null;
+            immediateFlush = false;
+        }
+        
+        // The loader queues a flush once it is done
+        if (!isLoaded()) {
+            return;
+        }
+        if (!writePendingChanges()) {
+            // Retry the failed batch after another interval
+            synchronized (this) {
+                scheduleFlush();
+            }
+        }
+    }
+    
+    /**
+     * Hand all pending changes to the backend in one batch
+     * A failed batch, whether the backend threw a checked or a runtime exception, is queued again
+     * (behind any newer change for the same player)
+     * @return false if the backend rejected the batch or the player colors are not loaded
+     */
+    private boolean writePendingChanges() {
+        // Nothing is written before the backend is loaded; until then changes only collect
+        if (!isLoaded()) {
+            return false;
+        }
+        synchronized (writeLock) {
+            Map<UUID, Byte> batch;
+            synchronized (this) {
+                if (pendingChanges.isEmpty()) {
+                    return true;
+                }
+                batch = pendingChanges;
+                pendingChanges = new LinkedHashMap<>();
+                writingChanges = batch;
+            }
+            
             try {
-                dataConfig.save(dataFile);
+                storage.batchUpsert(batch);
+                metrics.increment(PluginMetrics.Counter.SAVE_BATCHES, 1);
+                metrics.increment(PluginMetrics.Counter.SAVE_RECORDS, batch.size());
+            } catch (IOException | RuntimeException e) {
+                // A runtime failure in the backend must not lose the batch or kill the writer task either
+                metrics.increment(PluginMetrics.Counter.SAVE_FAILURES, 1);
+                plugin.getLogger().severe(String.format("Could not save player colors: %s", e));
+                synchronized (this) {
+                    batch.putAll(pendingChanges);
+                    pendingChanges = batch;
+                    writingChanges = Collections.emptyMap();
+                }
+                return false;
+            }
+            
+            synchronized (this) {
+                writingChanges = Collections.emptyMap();
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Save the data file synchronously (used on shutdown)
+     */
+    public void saveSync() {
+        // A load still running at shutdown gets as long as the final flush would
+        if (!awaitLoad(TimeUnit.SECONDS.toMillis(SHUTDOWN_FLUSH_TIMEOUT_SECONDS))) {
+            plugin.getLogger().severe(String.format("Player colors were not loaded - %d changes made since startup are not saved", getDirtyCount()));
+            return;
+        }
+        
+        // Skip the flush interval and queue the final flush behind any write in progress
+        Future<Boolean> finalFlush;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            finalFlush = writer.isShutdown() ? null : writer.submit(this::writePendingChanges);
+        }
+        
+        if (finalFlush == null) {
+            writePendingChanges();
+            return;
+        }
+        
+        try {
+            finalFlush.get(SHUTDOWN_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().severe(String.format("Saving player colors did not finish within %d seconds - %d changes may be lost",
+                    SHUTDOWN_FLUSH_TIMEOUT_SECONDS, getDirtyCount()));
+        } catch (ExecutionException e) {
+            plugin.getLogger().severe(String.format("Could not save player colors: %s", e.getCause().getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Get the number of players held in memory (all players, or the cached ones in lazy-load mode)
+     * @return Cached player count
+     */
+    public int getCacheSize() {
+        return lazyLoad ? lazyCache.size() : colorCache.size();
+    }
+    
+    /**
+     * Estimate the heap used by the color cache
+     * @return Approximate size in bytes
+     */
+    public long getCacheMemoryBytes() {
+        return lazyLoad ? lazyCache.estimatedMemoryBytes() : colorCache.estimatedMemoryBytes();
+    }
+    
+    /**
+     * Get the number of players with changes not yet written to the backend
+     * @return Dirty player count
+     */
+    public synchronized int getDirtyCount() {
+        return pendingChanges.size() + writingChanges.size();
+    }
+    
+    /**
+     * Stop the writer thread and close the storage backend (used on shutdown, after {@link #saveSync()})
+     */
+    public void close() {
+        // A loader still running keeps the backend to itself (its thread is a daemon and ends with the server)
+        boolean loadFinished = ready.isDone();
+        if (isLoaded()) {
+            saveLastSeen();
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Player color writer did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (!loadFinished || storage == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            try {
+                storage.close();
             } catch (IOException e) {
-                plugin.getLogger().severe(String.format("Could not save playerdata.yml file: %s", e.getMessage()));
+                plugin.getLogger().severe(String.format("Could not close player data storage: %s", e.getMessage()));
             }
         }
     }
     
     /**
      * Reload the data file from disk and refresh cache
+     * Safe to call off the main thread: readers keep using the old cache until the new one is published
      */
     public void reload() {
-        synchronized (this) {
-            dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-            loadCache();
+        if (!isLoaded()) {
+            plugin.getLogger().warning("Player colors are not loaded - not reloading them");
+            return;
+        }
+        synchronized (writeLock) {
+            // Make sure the backend is complete before reading it back
+            writePendingChanges();
+            
+            storageLock.writeLock().lock();
+            try {
+                storage.close();
+                storage.open();
+            } catch (IOException e) {
+                plugin.getLogger().severe(String.format("Could not reopen player data storage: %s", e.getMessage()));
+            } finally {
+                storageLock.writeLock().unlock();
+            }
+            loadCache(null);
         }
     }
 }
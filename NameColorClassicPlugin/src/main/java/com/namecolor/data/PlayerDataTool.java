@@ -0,0 +1,92 @@
+package com.namecolor.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Offline converter between player data formats (the Main-Class of the plugin jar)
+ *
+ *   java -jar NameColorClassic-1.0.jar <input> <output>
+ *
+ * Formats follow the file extensions (.yml/.yaml, .csv, .dat). Records are streamed, so converting
+ * millions of players needs no large heap. A playerdata.journal next to a playerdata.yml/.dat input
+ * is applied on top of it. Uses no Bukkit classes, so it runs without a server
+ */
+public final class PlayerDataTool {
+    
+    private PlayerDataTool() {
+    }
+    
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java -jar NameColorClassic-1.0.jar <input> <output>");
+            System.err.println("Formats by extension: .yml/.yaml (playerdata.yml), .csv (uuid,color), .dat (playerdata.dat)");
+            System.exit(2);
+        }
+        
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        DataFormat inputFormat = DataFormat.fromFileName(input.getName());
+        DataFormat outputFormat = DataFormat.fromFileName(output.getName());
+        if (inputFormat == null || outputFormat == null) {
+            System.err.println("Unknown file extension - use .yml, .yaml, .csv or .dat");
+            System.exit(2);
+        }
+        if (!input.isFile()) {
+            System.err.println("Input file not found: " + input);
+            System.exit(1);
+        }
+        if (output.exists()) {
+            System.err.println("Output file already exists: " + output);
+            System.exit(1);
+        }
+        
+        Logger logger = Logger.getLogger("NameColor");
+        long start = System.nanoTime();
+        try {
+            int count = convert(input, inputFormat, output, outputFormat, logger);
+            System.out.println(String.format("Converted %d player colors from %s to %s in %d ms",
+                    count, input.getName(), output.getName(), (System.nanoTime() - start) / 1000000));
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Stream one data file into another
+     * @return Number of records written
+     */
+    private static int convert(File input, DataFormat inputFormat, File output, DataFormat outputFormat, Logger logger) throws IOException {
+        Map<UUID, Byte> journalChanges = readJournal(input, inputFormat, logger);
+        
+        try (DataFormat.RecordOutput writer = outputFormat.openWriter(output)) {
+            if (journalChanges.isEmpty()) {
+                inputFormat.read(input, writer, logger);
+            } else {
+                JournaledSnapshot.forEachRecord(input, inputFormat == DataFormat.BINARY, journalChanges, writer, logger);
+            }
+            return writer.finish();
+        }
+    }
+    
+    /**
+     * Replay the journal of a plugin data folder snapshot (changes not yet compacted into it)
+     */
+    private static Map<UUID, Byte> readJournal(File input, DataFormat inputFormat, Logger logger) throws IOException {
+        String name = input.getName();
+        if (inputFormat == DataFormat.CSV || !(name.equals("playerdata.yml") || name.equals("playerdata.dat"))) {
+            return Collections.emptyMap();
+        }
+        
+        Map<UUID, Byte> changes = JournaledSnapshot.readJournals(input.getAbsoluteFile().getParentFile(), logger);
+        if (!changes.isEmpty()) {
+            logger.info(String.format("Applying %d journaled changes to %s", changes.size(), name));
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,125 @@
+package com.namecolor.data;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Persistence backend for player colors
+ *
+ * Colors are passed as ChatColor ordinals; {@link ColorStore#NO_COLOR} in a change means
+ * the player's color was removed. Implementations are called from the async save thread and,
+ * for lookups, from async pre-login threads, so they must be safe for concurrent use
+ */
+public interface PlayerStorage {
+    
+    /**
+     * Open the backend, creating or migrating its files as needed
+     * @throws IOException if the backend cannot be opened
+     */
+    void open() throws IOException;
+    
+    /**
+     * Load every stored color
+     * @return A new store holding all records
+     * @throws IOException if the data cannot be read
+     */
+    ColorStore loadAll() throws IOException;
+    
+    /**
+     * Load every stored color, splitting the work over a pool where the format allows it (startup load)
+     * Backends that cannot split their data load it on the calling thread
+     * @param pool Pool for parallel parsing
+     * @return A new store holding all records
+     * @throws IOException if the data cannot be read
+     */
+    default ColorStore loadAll(ForkJoinPool pool) throws IOException {
+        return loadAll();
+    }
+    
+    /**
+     * Stream every stored color to a sink without loading them all into memory (export)
+     * @param sink Receives one record per player, in no particular order
+     * @throws IOException if the data cannot be read or the sink fails
+     */
+    void forEach(RecordSink sink) throws IOException;
+    
+    /**
+     * Check if single records can be looked up without reading everything (required for lazy-load)
+     * @return true if {@link #get(UUID)} is cheap
+     */
+    boolean supportsLookup();
+    
+    /**
+     * Look up a single record; without {@link #supportsLookup()} this may read all stored records
+     * @param uuid Player UUID
+     * @return The color ordinal or {@link ColorStore#NO_COLOR}
+     * @throws IOException if the record cannot be read
+     */
+    byte get(UUID uuid) throws IOException;
+    
+    /**
+     * Store one player's color
+     * @param uuid Player UUID
+     * @param color Color ordinal
+     * @throws IOException if the write fails
+     */
+    void upsert(UUID uuid, byte color) throws IOException;
+    
+    /**
+     * Delete one player's color
+     * @param uuid Player UUID
+     * @throws IOException if the write fails
+     */
+    void delete(UUID uuid) throws IOException;
+    
+    /**
+     * Apply a batch of changes in one write (one transaction where the backend has them)
+     * @param changes Color ordinal per UUID, {@link ColorStore#NO_COLOR} to delete
+     * @throws IOException if the write fails
+     */
+    void batchUpsert(Map<UUID, Byte> changes) throws IOException;
+    
+    /**
+     * Check if the backend keeps a change feed that servers sharing it can poll (storage.sync-interval-ms)
+     * @return true if {@link #getChangeSequence()} and {@link #readChanges(long, RecordSink)} are supported
+     */
+    default boolean supportsChangeFeed() {
+        return false;
+    }
+    
+    /**
+     * Get the sequence of the latest change in the feed (only if {@link #supportsChangeFeed()})
+     * @return The sequence, 0 if the feed is empty
+     * @throws IOException if the feed cannot be read
+     */
+    default long getChangeSequence() throws IOException {
+        return 0;
+    }
+    
+    /**
+     * Read the changes other servers made after a sequence (only if {@link #supportsChangeFeed()})
+     * @param afterSequence Sequence of the last change already applied
+     * @param sink Receives the latest color of each changed player, {@link ColorStore#NO_COLOR} if removed
+     * @return Sequence of the last change read, or -1 if changes after afterSequence are no longer in the feed
+     * @throws IOException if the feed cannot be read or the sink fails
+     */
+    default long readChanges(long afterSequence, RecordSink sink) throws IOException {
+        return afterSequence;
+    }
+    
+    /**
+     * Reclaim the space left by deleted records (after pruning)
+     * Backends that never keep deleted records around do nothing
+     * @throws IOException if the data cannot be rewritten
+     */
+    default void compact() throws IOException {
+    }
+    
+    /**
+     * Flush outstanding data and release the backend
+     * @throws IOException if the final flush fails
+     */
+    void close() throws IOException;
+}
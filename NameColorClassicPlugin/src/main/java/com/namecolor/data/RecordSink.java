@@ -0,0 +1,17 @@
+package com.namecolor.data;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Receives player records one at a time from a streaming reader
+ */
+public interface RecordSink {
+    
+    /**
+     * @param uuid Player UUID
+     * @param color Color ordinal, or {@link ColorStore#NO_COLOR} for a removal read from a change feed
+     * @throws IOException if the record cannot be written
+     */
+    void accept(UUID uuid, byte color) throws IOException;
+}
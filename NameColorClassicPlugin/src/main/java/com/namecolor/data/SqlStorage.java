@@ -0,0 +1,405 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.ColorNames;
+import com.namecolor.utils.PluginMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Embedded SQL storage (SQLite or H2), one row per player with a primary key on the UUID
+ *
+ * Upserts, deletes and lookups are single indexed statements, and a batch of changes is applied
+ * in one transaction, so no write ever touches more than the rows that changed. UUIDs and color
+ * names are stored as text so the database can be queried with any SQL client.
+ * The SQLite driver ships with Spigot; H2 must be provided on the server classpath.
+ *
+ * With the change feed on (SQLite only), every batch also appends its changes to namecolor_changes
+ * in the same transaction. Its autoincrement sequence only grows and SQLite commits one writer at
+ * a time, so servers sharing the database file can poll for the changes past the last sequence they saw
+ */
+public class SqlStorage implements PlayerStorage {
+    
+    /**
+     * Supported embedded databases
+     */
+    public enum Dialect {
+        SQLITE("org.sqlite.JDBC", "jdbc:sqlite:",
+                "INSERT OR REPLACE INTO namecolor_players (uuid, color) VALUES (?, ?)"),
+        H2("org.h2.Driver", "jdbc:h2:",
+                "MERGE INTO namecolor_players (uuid, color) KEY (uuid) VALUES (?, ?)");
+        
+        private final String driverClass;
+        private final String urlPrefix;
+        private final String upsertSql;
+        
+        Dialect(String driverClass, String urlPrefix, String upsertSql) {
+            this.driverClass = driverClass;
+            this.urlPrefix = urlPrefix;
+            this.upsertSql = upsertSql;
+        }
+    }
+    
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS namecolor_players (uuid CHAR(36) NOT NULL PRIMARY KEY, color VARCHAR(16) NOT NULL)";
+    private static final String SELECT_SQL = "SELECT color FROM namecolor_players WHERE uuid = ?";
+    private static final String SELECT_ALL_SQL = "SELECT uuid, color FROM namecolor_players";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM namecolor_players";
+    private static final String DELETE_SQL = "DELETE FROM namecolor_players WHERE uuid = ?";
+    
+    private static final String CREATE_CHANGES_SQL = "CREATE TABLE IF NOT EXISTS namecolor_changes"
+            + " (seq INTEGER PRIMARY KEY AUTOINCREMENT, uuid CHAR(36) NOT NULL, color VARCHAR(16), origin CHAR(36) NOT NULL)";
+    private static final String INSERT_CHANGE_SQL = "INSERT INTO namecolor_changes (uuid, color, origin) VALUES (?, ?, ?)";
+    private static final String SELECT_CHANGES_SQL = "SELECT seq, uuid, color, origin FROM namecolor_changes WHERE seq > ? ORDER BY seq";
+    private static final String MIN_SEQUENCE_SQL = "SELECT MIN(seq) FROM namecolor_changes";
+    private static final String MAX_SEQUENCE_SQL = "SELECT MAX(seq) FROM namecolor_changes";
+    private static final String TRIM_CHANGES_SQL = "DELETE FROM namecolor_changes WHERE seq <= (SELECT MAX(seq) FROM namecolor_changes) - ?";
+    
+    // Changes kept in the feed; a server further behind than this reloads everything instead
+    static final int CHANGE_FEED_RETAIN = 100000;
+    
+    // Rows fetched per round trip when streaming the whole table
+    private static final int FETCH_SIZE = 1000;
+    
+    private final File databaseFile;
+    private final Dialect dialect;
+    private final Logger logger;
+    private final PluginMetrics metrics;
+    private final boolean changeFeed;
+    
+    // Tags this server's changes in the feed, so polling skips them
+    private final String origin = UUID.randomUUID().toString();
+    
+    // JDBC connections are not safe for concurrent use, so every access synchronizes on this storage
+    private Connection connection;
+    private PreparedStatement selectStatement;
+    private PreparedStatement upsertStatement;
+    private PreparedStatement deleteStatement;
+    private PreparedStatement insertChangeStatement;
+    
+    /**
+     * @param databaseFile Database file (for H2, the path without the .mv.db extension)
+     * @param dialect Database to use
+     * @param logger Logger for skipped rows
+     * @param metrics Receives batch timings
+     * @param changeFeed Record every change in the change feed (ignored for H2)
+     */
+    public SqlStorage(File databaseFile, Dialect dialect, Logger logger, PluginMetrics metrics, boolean changeFeed) {
+        this.databaseFile = databaseFile;
+        this.dialect = dialect;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.changeFeed = changeFeed && dialect == Dialect.SQLITE;
+    }
+    
+    @Override
+    public synchronized void open() throws IOException {
+        try {
+            Class.forName(dialect.driverClass);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(String.format("JDBC driver %s is not available", dialect.driverClass));
+        }
+        
+        try {
+            connection = DriverManager.getConnection(dialect.urlPrefix + databaseFile.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                if (dialect == Dialect.SQLITE) {
+                    // WAL lets lookups proceed while a batch is being committed
+                    statement.execute("PRAGMA journal_mode=WAL");
+                    statement.execute("PRAGMA synchronous=NORMAL");
+                    // Other servers may hold the write lock of a shared file for a moment
+                    statement.execute("PRAGMA busy_timeout=5000");
+                }
+                statement.execute(CREATE_TABLE_SQL);
+                if (changeFeed) {
+                    statement.execute(CREATE_CHANGES_SQL);
+                }
+            }
+            
+            selectStatement = connection.prepareStatement(SELECT_SQL);
+            upsertStatement = connection.prepareStatement(dialect.upsertSql);
+            deleteStatement = connection.prepareStatement(DELETE_SQL);
+            if (changeFeed) {
+                insertChangeStatement = connection.prepareStatement(INSERT_CHANGE_SQL);
+            }
+        } catch (SQLException e) {
+            close();
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized ColorStore loadAll() throws IOException {
+        try (Statement statement = connection.createStatement()) {
+            int count = 0;
+            try (ResultSet result = statement.executeQuery(COUNT_SQL)) {
+                if (result.next()) {
+                    count = result.getInt(1);
+                }
+            }
+            
+            ColorStore store = new ColorStore(count);
+            forEach(store::put);
+            return store;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized void forEach(RecordSink sink) throws IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet result = statement.executeQuery(SELECT_ALL_SQL)) {
+                while (result.next()) {
+                    String uuidString = result.getString(1);
+                    String color = result.getString(2);
+                    int ordinal = ColorNames.getOrdinal(color);
+                    if (ordinal < 0) {
+                        logger.warning(String.format("Invalid color '%s' in %s for %s", color, databaseFile.getName(), uuidString));
+                        continue;
+                    }
+                    
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(uuidString);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning(String.format("Invalid UUID in %s: %s", databaseFile.getName(), uuidString));
+                        continue;
+                    }
+                    sink.accept(uuid, (byte) ordinal);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public boolean supportsLookup() {
+        return true;
+    }
+    
+    @Override
+    public synchronized byte get(UUID uuid) throws IOException {
+        try {
+            selectStatement.setString(1, uuid.toString());
+            try (ResultSet result = selectStatement.executeQuery()) {
+                if (!result.next()) {
+                    return ColorStore.NO_COLOR;
+                }
+                return (byte) ColorNames.getOrdinal(result.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized void upsert(UUID uuid, byte color) throws IOException {
+        try {
+            upsertStatement.setString(1, uuid.toString());
+            upsertStatement.setString(2, ColorNames.getName(color));
+            upsertStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized void delete(UUID uuid) throws IOException {
+        try {
+            deleteStatement.setString(1, uuid.toString());
+            deleteStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized void batchUpsert(Map<UUID, Byte> changes) throws IOException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        
+        try {
+            connection.setAutoCommit(false);
+            try {
+                long start = System.nanoTime();
+                boolean upserts = false;
+                boolean deletes = false;
+                for (Map.Entry<UUID, Byte> change : changes.entrySet()) {
+                    if (change.getValue() == ColorStore.NO_COLOR) {
+                        deleteStatement.setString(1, change.getKey().toString());
+                        deleteStatement.addBatch();
+                        deletes = true;
+                    } else {
+                        upsertStatement.setString(1, change.getKey().toString());
+                        upsertStatement.setString(2, ColorNames.getName(change.getValue()));
+                        upsertStatement.addBatch();
+                        upserts = true;
+                    }
+                    if (changeFeed) {
+                        insertChangeStatement.setString(1, change.getKey().toString());
+                        if (change.getValue() == ColorStore.NO_COLOR) {
+                            insertChangeStatement.setNull(2, Types.VARCHAR);
+                        } else {
+                            insertChangeStatement.setString(2, ColorNames.getName(change.getValue()));
+                        }
+                        insertChangeStatement.setString(3, origin);
+                        insertChangeStatement.addBatch();
+                    }
+                }
+                
+                long bound = System.nanoTime();
+                metrics.record(PluginMetrics.Timer.SAVE_SERIALIZE, bound - start);
+                
+                // Each UUID appears once per batch, so running upserts before deletes keeps the order
+                if (upserts) {
+                    upsertStatement.executeBatch();
+                }
+                if (deletes) {
+                    deleteStatement.executeBatch();
+                }
+                if (changeFeed) {
+                    insertChangeStatement.executeBatch();
+                    try (PreparedStatement trim = connection.prepareStatement(TRIM_CHANGES_SQL)) {
+                        trim.setInt(1, CHANGE_FEED_RETAIN);
+                        trim.executeUpdate();
+                    }
+                }
+                connection.commit();
+                metrics.record(PluginMetrics.Timer.SAVE_WRITE, System.nanoTime() - bound);
+            } catch (SQLException e) {
+                upsertStatement.clearBatch();
+                deleteStatement.clearBatch();
+                if (changeFeed) {
+                    insertChangeStatement.clearBatch();
+                }
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public boolean supportsChangeFeed() {
+        return changeFeed;
+    }
+    
+    @Override
+    public synchronized long getChangeSequence() throws IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(MAX_SEQUENCE_SQL)) {
+            return result.next() ? result.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Read the net changes of other servers after a sequence
+     * Only the last change per player counts, and a player whose last change came from this server
+     * is skipped: the cache already holds it
+     */
+    @Override
+    public synchronized long readChanges(long afterSequence, RecordSink sink) throws IOException {
+        Map<UUID, Byte> remoteChanges = new LinkedHashMap<>();
+        long lastSequence = afterSequence;
+        try {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(MIN_SEQUENCE_SQL)) {
+                // Trimmed past the last change this server saw
+                if (result.next() && result.getLong(1) > afterSequence + 1) {
+                    return -1;
+                }
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_CHANGES_SQL)) {
+                statement.setLong(1, afterSequence);
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        lastSequence = result.getLong(1);
+                        UUID uuid;
+                        try {
+                            uuid = UUID.fromString(result.getString(2));
+                        } catch (IllegalArgumentException e) {
+                            logger.warning(String.format("Invalid UUID in the change feed of %s: %s", databaseFile.getName(), result.getString(2)));
+                            continue;
+                        }
+                        
+                        if (origin.equals(result.getString(4))) {
+                            remoteChanges.remove(uuid);
+                            continue;
+                        }
+                        String color = result.getString(3);
+                        int ordinal = color == null ? ColorStore.NO_COLOR : ColorNames.getOrdinal(color);
+                        if (color != null && ordinal < 0) {
+                            logger.warning(String.format("Invalid color '%s' in the change feed of %s for %s", color, databaseFile.getName(), uuid));
+                            continue;
+                        }
+                        remoteChanges.put(uuid, (byte) ordinal);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        
+        for (Map.Entry<UUID, Byte> change : remoteChanges.entrySet()) {
+            sink.accept(change.getKey(), change.getValue());
+        }
+        return lastSequence;
+    }
+    
+    /**
+     * Rebuild the SQLite file without the pages freed by deleted rows (H2 compacts on its own)
+     */
+    @Override
+    public synchronized void compact() throws IOException {
+        if (dialect != Dialect.SQLITE) {
+            return;
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("VACUUM");
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (connection == null) {
+            return;
+        }
+        
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            connection = null;
+            selectStatement = null;
+            upsertStatement = null;
+            deleteStatement = null;
+            insertChangeStatement = null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.namecolor.listeners;
+
+import com.namecolor.NameColorPlugin;
+import com.namecolor.utils.NameRenderer;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+
+/**
+ * Listener to put colored names into chat messages (display.chat-format)
+ * Runs on the async chat threads and only reads pre-rendered names and the lock-free color cache,
+ * so chat never waits for or schedules work on the main thread
+ */
+public class ChatFormatListener implements Listener {
+    
+    // Placeholder for the sender's name in a chat format
+    private static final String NAME_PLACEHOLDER = "%1$s";
+    
+    private final NameColorPlugin plugin;
+    
+    public ChatFormatListener(NameColorPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerChat(AsyncPlayerChatEvent event) {
+        NameRenderer renderer = plugin.getNameRenderer();
+        if (!renderer.isChatFormatEnabled()) {
+            return;
+        }
+        
+        String format = event.getFormat();
+        if (format == null || !format.contains(NAME_PLACEHOLDER)) {
+            return;
+        }
+        
+        event.setFormat(format.replace(NAME_PLACEHOLDER, getColoredName(renderer, event.getPlayer())));
+    }
+    
+    /**
+     * Get the player's colored name, preferring the name rendered on the main thread
+     * A miss (right after a reload) is rendered here but not cached, so a reset can never be undone by chat
+     */
+    private String getColoredName(NameRenderer renderer, Player player) {
+        NameRenderer.RenderedName rendered = renderer.getRendered(player.getUniqueId());
+        if (rendered != null) {
+            return rendered.getDisplayName();
+        }
+        
+        ChatColor color = plugin.getPlayerDataManager().getPlayerChatColor(player.getUniqueId());
+        return color != null ? color + player.getName() + ChatColor.RESET : player.getName();
+    }
+}
@@ -0,0 +1,37 @@
+package com.namecolor.listeners;
+
+import com.namecolor.NameColorPlugin;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Listener to drop cached color permissions whenever they may have changed
+ */
+public class PermissionCacheListener implements Listener {
+    
+    private final NameColorPlugin plugin;
+    
+    public PermissionCacheListener(NameColorPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getPermissionCache().invalidate(event.getPlayer().getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getPermissionCache().invalidate(event.getPlayer().getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // Permission plugins may grant different permissions per world
+        plugin.getPermissionCache().invalidate(event.getPlayer().getUniqueId());
+    }
+}
@@ -1,32 +1,83 @@
 package com.namecolor.listeners;
 
 import com.namecolor.NameColorPlugin;
-import com.namecolor.utils.ColorHandler;
+import com.namecolor.utils.PluginMetrics;
+import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Listener to restore player colors on join
+ * The color is looked up during async pre-login, so the join itself does no storage work
  */
 public class PlayerJoinListener implements Listener {
     
+    // Stands in for "no color" in the hand-off map, which cannot hold null
+    private static final ChatColor NO_COLOR = ChatColor.RESET;
+    
     private final NameColorPlugin plugin;
     
+    // Colors resolved during pre-login, waiting for the player to join
+    private final Map<UUID, ChatColor> resolvedColors = new ConcurrentHashMap<>();
+    
     public PlayerJoinListener(NameColorPlugin plugin) {
         this.plugin = plugin;
     }
     
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        
+        // Still loading after startup (storage.async-startup): give it a moment, then let the player in
+        // without the hand-off; their color is applied when the load finishes
+        if (!plugin.getPlayerDataManager().awaitReady()) {
+            return;
+        }
+        
+        // Runs off the main thread, so a storage read here is fine
+        ChatColor color = plugin.getPlayerDataManager().getPlayerChatColor(event.getUniqueId());
+        resolvedColors.put(event.getUniqueId(), color != null ? color : NO_COLOR);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        // Login refused after pre-login - drop the hand-off
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            resolvedColors.remove(event.getPlayer().getUniqueId());
+        }
+    }
+    
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
+        long start = System.nanoTime();
         Player player = event.getPlayer();
+        plugin.getTabCompletionIndex().addPlayer(player.getName());
+        
+        // Use the color resolved during pre-login, falling back to a lookup if there is none
+        ChatColor color = resolvedColors.remove(player.getUniqueId());
+        if (color == null) {
+            color = plugin.getPlayerDataManager().getPlayerChatColor(player.getUniqueId());
+        } else if (color == NO_COLOR) {
+            color = null;
+        }
         
-        // Check if player has a saved color
-        String savedColor = plugin.getPlayerDataManager().getPlayerColor(player.getUniqueId());
+        plugin.getPlayerDataManager().pinPlayer(player.getUniqueId(), color);
+        plugin.getPlayerDataManager().playerJoined(player.getUniqueId());
         
-        if (savedColor != null && ColorHandler.isValidColor(savedColor)) {
-            plugin.applyColorToPlayer(player, savedColor);
+        if (color != null) {
+            plugin.applyColorToPlayer(player, color);
         }
+        plugin.getMetrics().record(PluginMetrics.Timer.JOIN_APPLY, System.nanoTime() - start);
     }
 }
@@ -0,0 +1,36 @@
+package com.namecolor.listeners;
+
+import com.namecolor.NameColorPlugin;
+import com.namecolor.utils.NametagTeams;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Listener to release cached player data on quit
+ */
+public class PlayerQuitListener implements Listener {
+    
+    private final NameColorPlugin plugin;
+    
+    public PlayerQuitListener(NameColorPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // A color change still held back by the rate limit is dropped with the player
+        plugin.getNameColorCommand().releasePlayer(event.getPlayer().getUniqueId());
+        plugin.getPlayerDataManager().unpinPlayer(event.getPlayer().getUniqueId());
+        plugin.getPlayerDataManager().playerQuit(event.getPlayer().getUniqueId());
+        plugin.getNameRenderer().invalidate(event.getPlayer().getUniqueId());
+        plugin.getTabCompletionIndex().removePlayer(event.getPlayer().getName());
+        
+        // Keep the shared teams down to online players
+        NametagTeams nametagTeams = plugin.getNametagTeams();
+        if (nametagTeams != null) {
+            nametagTeams.reset(event.getPlayer().getName());
+        }
+    }
+}
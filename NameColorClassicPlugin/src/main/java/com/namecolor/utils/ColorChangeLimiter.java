@@ -0,0 +1,264 @@
+package com.namecolor.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Token bucket per player for color changes (rate-limit.self and rate-limit.admin)
+ *
+ * Each player may make rate-limit.<kind>.burst changes back to back and regains one every
+ * refill-seconds. A change made without a token is held back instead of applied: only the latest
+ * held-back change of a player is kept, and it is applied (displayed and saved) once when the next
+ * token is due, so a client toggling colors many times a second causes one update per refill.
+ * A held-back change is dropped rather than applied when a bulk change supersedes it or the player quits.
+ * The limit is off unless refill-seconds is set.
+ * Main thread only
+ */
+public class ColorChangeLimiter {
+    
+    /**
+     * What happened to a submitted change
+     */
+    public enum Result {
+        // Applied right away
+        APPLIED,
+        // Held back until the next token; the first held-back change of the window
+        DEFERRED,
+        // Held back, replacing a change that was already waiting
+        REPLACED
+    }
+    
+    private static final long NANOS_PER_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    private final JavaPlugin plugin;
+    private final PluginMetrics metrics;
+    private final String path;
+    
+    // Settings, refreshed by reloadSettings(); refillNanos 0 turns the limit off
+    private double burst;
+    private long refillNanos;
+    
+    private final Map<UUID, Bucket> buckets = new HashMap<>();
+    
+    private static final class Bucket {
+        double tokens;
+        long updated;
+        Runnable pending;
+        CommandSender pendingSender;
+        Consumer<CommandSender> pendingReplaced;
+        BukkitTask task;
+    }
+    
+    /**
+     * @param plugin Plugin owning the deferred change tasks
+     * @param metrics Metrics counting held-back changes
+     * @param kind Config section under rate-limit (self or admin)
+     */
+    public ColorChangeLimiter(JavaPlugin plugin, PluginMetrics metrics, String kind) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.path = "rate-limit." + kind + ".";
+        reloadSettings(plugin.getConfig());
+    }
+    
+    /**
+     * Re-read the burst and refill settings (existing buckets keep their tokens)
+     * @param config The reloaded plugin config
+     */
+    public void reloadSettings(FileConfiguration config) {
+        this.burst = Math.max(1, config.getInt(path + "burst", 3));
+        this.refillNanos = Math.max(0, (long) (config.getDouble(path + "refill-seconds", 0) * TimeUnit.SECONDS.toNanos(1)));
+        if (refillNanos == 0) {
+            applyAllPending();
+            buckets.clear();
+        }
+    }
+    
+    /**
+     * Apply a change now if the player has a token, otherwise hold it back as the player's latest change
+     * @param uuid The player whose color changes
+     * @param sender Who made the change
+     * @param change Applies the change (display, save and messages)
+     * @param onReplaced Told the sender of a newer change if one from someone else replaces this one
+     *                   before it is applied, or null
+     * @return Whether the change was applied or held back
+     */
+    public Result submit(UUID uuid, CommandSender sender, Runnable change, Consumer<CommandSender> onReplaced) {
+        if (refillNanos == 0) {
+            change.run();
+            return Result.APPLIED;
+        }
+        
+        Bucket bucket = buckets.get(uuid);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.tokens = burst;
+            bucket.updated = System.nanoTime();
+            buckets.put(uuid, bucket);
+        }
+        refill(bucket);
+        
+        if (bucket.pending == null && bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            change.run();
+            return Result.APPLIED;
+        }
+        
+        metrics.increment(PluginMetrics.Counter.RATE_LIMITED, 1);
+        boolean replaced = bucket.pending != null;
+        CommandSender previousSender = bucket.pendingSender;
+        Consumer<CommandSender> previousReplaced = bucket.pendingReplaced;
+        bucket.pending = change;
+        bucket.pendingSender = sender;
+        bucket.pendingReplaced = onReplaced;
+        if (replaced) {
+            metrics.increment(PluginMetrics.Counter.RATE_LIMIT_SUPERSEDED, 1);
+            if (previousReplaced != null && previousSender != sender) {
+                previousReplaced.accept(sender);
+            }
+            return Result.REPLACED;
+        }
+        schedule(uuid, bucket);
+        return Result.DEFERRED;
+    }
+    
+    /**
+     * Get how long until a player's held-back change is applied
+     * @param uuid Player UUID
+     * @return Milliseconds until the next token, 0 if one is available
+     */
+    public long getWaitMillis(UUID uuid) {
+        Bucket bucket = buckets.get(uuid);
+        if (bucket == null || refillNanos == 0) {
+            return 0;
+        }
+        refill(bucket);
+        return TimeUnit.NANOSECONDS.toMillis(nanosUntilToken(bucket));
+    }
+    
+    /**
+     * Forget a player's bucket, dropping their held-back change without applying it (quit)
+     * The change would display and save a color for a player who is no longer online
+     * @param uuid Player UUID
+     */
+    public void release(UUID uuid) {
+        Bucket bucket = buckets.remove(uuid);
+        if (bucket != null) {
+            dropPending(bucket);
+        }
+    }
+    
+    /**
+     * Drop the held-back changes of players a bulk change is about to set, so none is applied over it later
+     * The buckets keep their tokens. Call it before the bulk change is written
+     * @param uuids The players the bulk change sets
+     * @param sender Who made the bulk change (passed to the onReplaced callback of a dropped change)
+     */
+    public void discard(Collection<UUID> uuids, CommandSender sender) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        
+        for (UUID uuid : uuids) {
+            Bucket bucket = buckets.get(uuid);
+            if (bucket == null || bucket.pending == null) {
+                continue;
+            }
+            
+            CommandSender previousSender = bucket.pendingSender;
+            Consumer<CommandSender> previousReplaced = bucket.pendingReplaced;
+            dropPending(bucket);
+            metrics.increment(PluginMetrics.Counter.RATE_LIMIT_SUPERSEDED, 1);
+            if (previousReplaced != null && previousSender != sender) {
+                previousReplaced.accept(sender);
+            }
+        }
+    }
+    
+    /**
+     * Apply every held-back change now (disable, or the limit turned off), keeping the buckets
+     */
+    public void applyAllPending() {
+        // Changes may submit again while they run, so work on a copy
+        List<Bucket> waiting = new ArrayList<>();
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.pending != null) {
+                waiting.add(bucket);
+            }
+        }
+        for (Bucket bucket : waiting) {
+            applyPending(bucket);
+        }
+    }
+    
+    private void refill(Bucket bucket) {
+        long now = System.nanoTime();
+        if (bucket.tokens < burst) {
+            bucket.tokens = Math.min(burst, bucket.tokens + (double) (now - bucket.updated) / refillNanos);
+        }
+        bucket.updated = now;
+    }
+    
+    private long nanosUntilToken(Bucket bucket) {
+        return bucket.tokens >= 1 ? 0 : (long) Math.ceil((1 - bucket.tokens) * refillNanos);
+    }
+    
+    /**
+     * Run the bucket's held-back change on the tick its next token is due
+     */
+    private void schedule(UUID uuid, Bucket bucket) {
+        long ticks = Math.max(1, (nanosUntilToken(bucket) + NANOS_PER_TICK - 1) / NANOS_PER_TICK);
+        bucket.task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            bucket.task = null;
+            if (buckets.get(uuid) != bucket || bucket.pending == null) {
+                return;
+            }
+            refill(bucket);
+            if (bucket.tokens < 1) {
+                // Ticks can come faster than every 50 ms while the server catches up after lag
+                schedule(uuid, bucket);
+                return;
+            }
+            bucket.tokens -= 1;
+            takePending(bucket).run();
+        }, ticks);
+    }
+    
+    private void applyPending(Bucket bucket) {
+        if (bucket.task != null) {
+            bucket.task.cancel();
+            bucket.task = null;
+        }
+        if (bucket.pending != null) {
+            takePending(bucket).run();
+        }
+    }
+    
+    private void dropPending(Bucket bucket) {
+        if (bucket.task != null) {
+            bucket.task.cancel();
+            bucket.task = null;
+        }
+        takePending(bucket);
+    }
+    
+    private Runnable takePending(Bucket bucket) {
+        Runnable change = bucket.pending;
+        bucket.pending = null;
+        bucket.pendingSender = null;
+        bucket.pendingReplaced = null;
+        return change;
+    }
+}
@@ -1,75 +1,79 @@
 package com.namecolor.utils;
 
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.logging.Logger;
 
 /**
  * Utility class to handle color name to ChatColor conversions
- * Only includes the 16 standard Minecraft colors (no formatting codes)
+ * Only includes the 16 standard Minecraft colors (no formatting codes), plus the aliases from
+ * color-aliases in config.yml. Lookups go through a {@link ColorRegistry} and never allocate
  */
 public class ColorHandler {
     
-    private static final Map<String, ChatColor> COLOR_MAP = new HashMap<>();
+    // Reverse lookup by ChatColor ordinal (names by ordinal are in ColorNames, shared with storage)
+    private static final ChatColor[] COLORS_BY_ORDINAL = new ChatColor[16];
+    
+    // Replaced when the aliases are (re)loaded; read from any thread
+    private static volatile ColorRegistry registry = ColorRegistry.canonical();
     
     static {
-        // Initialize all 16 standard Minecraft colors
-        COLOR_MAP.put("black", ChatColor.BLACK);
-        COLOR_MAP.put("darkblue", ChatColor.DARK_BLUE);
-        COLOR_MAP.put("darkgreen", ChatColor.DARK_GREEN);
-        COLOR_MAP.put("darkaqua", ChatColor.DARK_AQUA);
-        COLOR_MAP.put("darkred", ChatColor.DARK_RED);
-        COLOR_MAP.put("darkpurple", ChatColor.DARK_PURPLE);
-        COLOR_MAP.put("gold", ChatColor.GOLD);
-        COLOR_MAP.put("gray", ChatColor.GRAY);
-        COLOR_MAP.put("darkgray", ChatColor.DARK_GRAY);
-        COLOR_MAP.put("blue", ChatColor.BLUE);
-        COLOR_MAP.put("green", ChatColor.GREEN);
-        COLOR_MAP.put("aqua", ChatColor.AQUA);
-        COLOR_MAP.put("red", ChatColor.RED);
-        COLOR_MAP.put("lightpurple", ChatColor.LIGHT_PURPLE);
-        COLOR_MAP.put("yellow", ChatColor.YELLOW);
-        COLOR_MAP.put("white", ChatColor.WHITE);
+        // The 16 standard Minecraft colors are the first ChatColor constants (BLACK = 0 ... WHITE = 15)
+        for (int ordinal = 0; ordinal < COLORS_BY_ORDINAL.length; ordinal++) {
+            COLORS_BY_ORDINAL[ordinal] = ChatColor.values()[ordinal];
+        }
+    }
+    
+    /**
+     * Compile the color aliases from config.yml (on enable and reload)
+     * @param aliases The color-aliases section (alias: color), or null for none
+     * @param logger Logger for skipped aliases
+     */
+    public static void loadAliases(ConfigurationSection aliases, Logger logger) {
+        Map<String, String> aliasMap = new LinkedHashMap<>();
+        if (aliases != null) {
+            for (String alias : aliases.getKeys(false)) {
+                aliasMap.put(alias, aliases.getString(alias, ""));
+            }
+        }
+        registry = ColorRegistry.withAliases(aliasMap, logger);
     }
     
     /**
-     * Get ChatColor from a color name (case-insensitive)
+     * Get ChatColor from a color name or alias (case-insensitive)
      * @param colorName The name of the color
      * @return ChatColor object or null if not found
      */
     public static ChatColor getColorByName(String colorName) {
-        if (colorName == null) {
-            return null;
-        }
-        return COLOR_MAP.get(colorName.toLowerCase());
+        return getColorByOrdinal(registry.getOrdinal(colorName));
     }
     
     /**
-     * Check if a color name is valid
+     * Check if a color name or alias is valid
      * @param colorName The name of the color
      * @return true if the color exists
      */
     public static boolean isValidColor(String colorName) {
-        return colorName != null && COLOR_MAP.containsKey(colorName.toLowerCase());
+        return registry.getOrdinal(colorName) >= 0;
     }
     
     /**
-     * Get all available color names
-     * @return Array of color names
+     * Get all available color names in display order (black to white, without aliases)
+     * @return Shared array of color names, must not be modified
      */
     public static String[] getAllColorNames() {
-        return COLOR_MAP.keySet().toArray(new String[COLOR_MAP.size()]);
+        return registry.getNames();
     }
     
     /**
      * Get color names excluding black
-     * @return Array of color names without black
+     * @return Shared array of color names without black, must not be modified
      */
     public static String[] getColorsWithoutBlack() {
-        return COLOR_MAP.keySet().stream()
-                .filter(name -> !name.equals("black"))
-                .toArray(String[]::new);
+        return registry.getNamesWithoutBlack();
     }
     
     /**
@@ -78,12 +82,34 @@ public class ColorHandler {
      * @return The color name or null if not found
      */
     public static String getColorName(ChatColor color) {
-        for (Map.Entry<String, ChatColor> entry : COLOR_MAP.entrySet()) {
-            if (entry.getValue() == color) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return color != null ? ColorNames.getName(color.ordinal()) : null;
+    }
+    
+    /**
+     * Get the compact ordinal used to store a color
+     * @param colorName The name of the color or an alias (case-insensitive)
+     * @return The ChatColor ordinal or -1 if the color is not valid
+     */
+    public static int getColorOrdinal(String colorName) {
+        return registry.getOrdinal(colorName);
+    }
+    
+    /**
+     * Get the color name for a stored ordinal
+     * @param ordinal The ChatColor ordinal
+     * @return The color name or null if the ordinal is not a valid color
+     */
+    public static String getColorNameByOrdinal(int ordinal) {
+        return ColorNames.getName(ordinal);
+    }
+    
+    /**
+     * Get the ChatColor for a stored ordinal
+     * @param ordinal The ChatColor ordinal
+     * @return ChatColor object or null if the ordinal is not a valid color
+     */
+    public static ChatColor getColorByOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < COLORS_BY_ORDINAL.length ? COLORS_BY_ORDINAL[ordinal] : null;
     }
     
     /**
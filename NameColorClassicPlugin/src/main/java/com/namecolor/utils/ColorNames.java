@@ -0,0 +1,35 @@
+package com.namecolor.utils;
+
+/**
+ * Names of the 16 standard colors by ChatColor ordinal
+ * Free of Bukkit classes, so the storage code can also run outside the server (offline data tool)
+ */
+public final class ColorNames {
+    
+    // Indexed by ChatColor ordinal (BLACK = 0 ... WHITE = 15)
+    private static final String[] NAMES = {
+            "black", "darkblue", "darkgreen", "darkaqua", "darkred", "darkpurple", "gold", "gray",
+            "darkgray", "blue", "green", "aqua", "red", "lightpurple", "yellow", "white"
+    };
+    
+    private ColorNames() {
+    }
+    
+    /**
+     * Get the stored ordinal of a color name
+     * @param colorName The name of the color (case-insensitive)
+     * @return The ChatColor ordinal or -1 if the color is not valid
+     */
+    public static int getOrdinal(String colorName) {
+        return ColorRegistry.canonical().getOrdinal(colorName);
+    }
+    
+    /**
+     * Get the color name for a stored ordinal
+     * @param ordinal The ChatColor ordinal
+     * @return The color name or null if the ordinal is not a valid color
+     */
+    public static String getName(int ordinal) {
+        return ordinal >= 0 && ordinal < NAMES.length ? NAMES[ordinal] : null;
+    }
+}
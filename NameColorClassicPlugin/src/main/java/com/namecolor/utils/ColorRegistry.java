@@ -0,0 +1,214 @@
+package com.namecolor.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Lookup from color names and aliases to ChatColor ordinals
+ *
+ * The names are compiled into an open table whose size and hash seed are chosen so that no two names
+ * share a slot, so a lookup is one hash over the characters (ASCII case folded on the fly) and one
+ * comparison, without allocating. Name lists are in ordinal order (black to white).
+ * Immutable; free of Bukkit classes like {@link ColorNames}
+ */
+public final class ColorRegistry {
+    
+    // Largest table tried before giving up on a collision-free layout (far above what 16 colors and aliases need)
+    private static final int MAX_TABLE_BITS = 16;
+    private static final int SEEDS_PER_SIZE = 64;
+    
+    private static final ColorRegistry CANONICAL = compile(new String[0], new byte[0]);
+    
+    private static final String[] NAMES = new String[16];
+    private static final String[] NAMES_WITHOUT_BLACK = new String[15];
+    
+    static {
+        for (int ordinal = 0; ordinal < NAMES.length; ordinal++) {
+            NAMES[ordinal] = ColorNames.getName(ordinal);
+        }
+        System.arraycopy(NAMES, 1, NAMES_WITHOUT_BLACK, 0, NAMES_WITHOUT_BLACK.length);
+    }
+    
+    private final String[] keys;
+    private final byte[] ordinals;
+    private final int mask;
+    private final int seed;
+    private final int aliasCount;
+    
+    private ColorRegistry(String[] keys, byte[] ordinals, int seed, int aliasCount) {
+        this.keys = keys;
+        this.ordinals = ordinals;
+        this.mask = keys.length - 1;
+        this.seed = seed;
+        this.aliasCount = aliasCount;
+    }
+    
+    /**
+     * Get the registry of the 16 color names without aliases
+     * @return The shared registry
+     */
+    public static ColorRegistry canonical() {
+        return CANONICAL;
+    }
+    
+    /**
+     * Build a registry with extra names for colors (color-aliases in config.yml)
+     * Aliases must be letters, digits or underscores and may not replace a color name; invalid ones are logged and skipped
+     * @param aliases Alias -> color name
+     * @param logger Logger for skipped aliases
+     * @return The registry
+     */
+    public static ColorRegistry withAliases(Map<String, String> aliases, Logger logger) {
+        List<String> names = new ArrayList<>();
+        List<Byte> targets = new ArrayList<>();
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            String name = alias.getKey().toLowerCase(Locale.ROOT);
+            int ordinal = CANONICAL.getOrdinal(alias.getValue());
+            if (ordinal < 0) {
+                logger.warning(String.format("Ignoring color alias '%s': '%s' is not a color", name, alias.getValue()));
+            } else if (!isValidAlias(name)) {
+                logger.warning(String.format("Ignoring color alias '%s': use only letters, digits and underscores", name));
+            } else if (CANONICAL.getOrdinal(name) >= 0 || names.contains(name)) {
+                logger.warning(String.format("Ignoring color alias '%s': the name is already taken", name));
+            } else {
+                names.add(name);
+                targets.add((byte) ordinal);
+            }
+        }
+        
+        byte[] aliasOrdinals = new byte[targets.size()];
+        for (int i = 0; i < aliasOrdinals.length; i++) {
+            aliasOrdinals[i] = targets.get(i);
+        }
+        return compile(names.toArray(new String[0]), aliasOrdinals);
+    }
+    
+    /**
+     * Get the ordinal of a color name or alias
+     * @param name The name (case-insensitive)
+     * @return The ChatColor ordinal or -1 if the name is not known
+     */
+    public int getOrdinal(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int slot = hash(name, seed) & mask;
+        String key = keys[slot];
+        return key != null && matches(key, name) ? ordinals[slot] : -1;
+    }
+    
+    /**
+     * Get all color names in ordinal order (aliases are not listed)
+     * @return Shared array, must not be modified (clone it to sort)
+     */
+    public String[] getNames() {
+        return NAMES;
+    }
+    
+    /**
+     * Get the color names in ordinal order, without black
+     * @return Shared array, must not be modified
+     */
+    public String[] getNamesWithoutBlack() {
+        return NAMES_WITHOUT_BLACK;
+    }
+    
+    /**
+     * Get the number of aliases in this registry
+     * @return Alias count
+     */
+    public int getAliasCount() {
+        return aliasCount;
+    }
+    
+    /**
+     * Lay the color names and aliases out in the smallest table, and with the first seed, that gives every name its own slot
+     */
+    private static ColorRegistry compile(String[] aliases, byte[] aliasOrdinals) {
+        int count = 16 + aliases.length;
+        String[] names = new String[count];
+        byte[] targets = new byte[count];
+        for (int ordinal = 0; ordinal < 16; ordinal++) {
+            names[ordinal] = ColorNames.getName(ordinal);
+            targets[ordinal] = (byte) ordinal;
+        }
+        System.arraycopy(aliases, 0, names, 16, aliases.length);
+        System.arraycopy(aliasOrdinals, 0, targets, 16, aliases.length);
+        
+        int bits = 32 - Integer.numberOfLeadingZeros(count * 2 - 1);
+        for (; bits <= MAX_TABLE_BITS; bits++) {
+            int size = 1 << bits;
+            for (int seed = 0; seed < SEEDS_PER_SIZE; seed++) {
+                String[] keys = new String[size];
+                byte[] ordinals = new byte[size];
+                boolean collisionFree = true;
+                for (int i = 0; i < count && collisionFree; i++) {
+                    int slot = hash(names[i], seed) & (size - 1);
+                    if (keys[slot] != null) {
+                        collisionFree = false;
+                    } else {
+                        keys[slot] = names[i];
+                        ordinals[slot] = targets[i];
+                    }
+                }
+                if (collisionFree) {
+                    return new ColorRegistry(keys, ordinals, seed, aliases.length);
+                }
+            }
+        }
+        throw new IllegalStateException(String.format("No collision-free layout for %d color names", count));
+    }
+    
+    /**
+     * Hash a name with ASCII letters folded to lower case, so any capitalization hashes alike
+     */
+    private static int hash(String name, int seed) {
+        int hash = seed * 0x9E3779B9;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            hash = hash * 31 + c;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+    
+    /**
+     * Compare a lower-case key with a name, ignoring the case of ASCII letters
+     */
+    private static boolean matches(String key, String name) {
+        if (key.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean isValidAlias(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
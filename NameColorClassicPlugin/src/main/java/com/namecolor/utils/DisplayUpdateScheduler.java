@@ -0,0 +1,147 @@
+package com.namecolor.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Spreads display updates for many players over several ticks
+ *
+ * Each tick updates queued players until the per-tick time budget or player limit is used up,
+ * so reapplying colors to a full server never stalls a tick. Players who left while queued are skipped.
+ * Main thread only
+ */
+public class DisplayUpdateScheduler {
+    
+    // Log progress of long runs about once a second
+    private static final int PROGRESS_LOG_TICKS = 20;
+    
+    private final JavaPlugin plugin;
+    private final Consumer<Player> update;
+    
+    // Budget settings, refreshed by reloadSettings()
+    private long budgetNanos;
+    private int maxPlayersPerTick;
+    
+    private final ArrayDeque<UUID> queue = new ArrayDeque<>();
+    private final Set<UUID> queued = new HashSet<>();
+    private BukkitTask task;
+    
+    // Progress of the current run
+    private int runTotal;
+    private int runDone;
+    private int runTicks;
+    
+    /**
+     * @param plugin Plugin owning the tick task
+     * @param update Update to run for each queued player
+     */
+    public DisplayUpdateScheduler(JavaPlugin plugin, Consumer<Player> update) {
+        this.plugin = plugin;
+        this.update = update;
+        reloadSettings(plugin.getConfig());
+    }
+    
+    /**
+     * Re-read the per-tick budget
+     * @param config The reloaded plugin config
+     */
+    public void reloadSettings(FileConfiguration config) {
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(100, (long) (config.getDouble("display.reapply-budget-ms", 5.0) * 1000)));
+        this.maxPlayersPerTick = Math.max(0, config.getInt("display.reapply-max-per-tick", 200));
+    }
+    
+    /**
+     * Queue updates for a group of players (each player is queued at most once)
+     * @param players Players to update
+     */
+    public void queueAll(Collection<? extends Player> players) {
+        for (Player player : players) {
+            if (queued.add(player.getUniqueId())) {
+                queue.add(player.getUniqueId());
+                runTotal++;
+            }
+        }
+        start();
+    }
+    
+    /**
+     * Get the number of players still waiting for their update
+     * @return Queued player count
+     */
+    public int getRemaining() {
+        return queue.size();
+    }
+    
+    /**
+     * Stop updating and drop the queue (used on disable)
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+        queued.clear();
+        resetProgress();
+    }
+    
+    private void start() {
+        if (task == null && !queue.isEmpty()) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 0L, 1L);
+        }
+    }
+    
+    /**
+     * Update queued players until this tick's budget is spent
+     */
+    private void tick() {
+        long deadline = System.nanoTime() + budgetNanos;
+        int updated = 0;
+        
+        // Always make progress, even if a single update takes longer than the budget
+        while (!queue.isEmpty()) {
+            UUID uuid = queue.poll();
+            queued.remove(uuid);
+            
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                update.accept(player);
+            }
+            updated++;
+            runDone++;
+            
+            if ((maxPlayersPerTick > 0 && updated >= maxPlayersPerTick) || System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        runTicks++;
+        
+        if (queue.isEmpty()) {
+            if (runTicks > 1) {
+                plugin.getLogger().info(String.format("Reapplied colors to %d players over %d ticks", runDone, runTicks));
+            }
+            task.cancel();
+            task = null;
+            resetProgress();
+        } else if (runTicks % PROGRESS_LOG_TICKS == 0) {
+            plugin.getLogger().info(String.format("Reapplying colors: %d/%d players", runDone, runTotal));
+        }
+    }
+    
+    private void resetProgress() {
+        runTotal = 0;
+        runDone = 0;
+        runTicks = 0;
+    }
+}
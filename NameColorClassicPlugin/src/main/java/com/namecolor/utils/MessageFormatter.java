@@ -1,17 +1,53 @@
 package com.namecolor.utils;
 
 import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Utility class to format plugin messages with the configured prefix
+ *
+ * Messages are compiled once per (re)load into literal segments and {placeholder} slots, with the
+ * prefix and color codes already applied, so formatting is a single pass into a reused builder
  */
 public class MessageFormatter {
     
     private final FileConfiguration config;
+    private final String prefix;
+    
+    // Compiled messages by key; keys missing from config are compiled on first use
+    private final Map<String, CompiledMessage> messages = new ConcurrentHashMap<>();
+    private final Map<String, String> helpMessages = new ConcurrentHashMap<>();
+    
+    // Reused per thread so rendering a message only allocates the resulting string
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
     
     public MessageFormatter(FileConfiguration config) {
         this.config = config;
+        this.prefix = ChatColor.translateAlternateColorCodes('§',
+                config.getString("message-format.prefix", "§1[§9NameColor§1]§3"));
+        
+        ConfigurationSection messageSection = config.getConfigurationSection("messages");
+        if (messageSection != null) {
+            for (String key : messageSection.getKeys(false)) {
+                messages.put(key, compileMessage(key));
+            }
+        }
+    }
+    
+    /**
+     * Build the full text of a message (prefix, space, translated message) and split it at its placeholders
+     */
+    private CompiledMessage compileMessage(String messageKey) {
+        String message = config.getString("messages." + messageKey, "");
+        return CompiledMessage.compile(prefix + " " + ChatColor.translateAlternateColorCodes('&', message));
+    }
+    
+    private CompiledMessage getCompiled(String messageKey) {
+        return messages.computeIfAbsent(messageKey, this::compileMessage);
     }
     
     /**
@@ -20,10 +56,7 @@ public class MessageFormatter {
      * @return Formatted message with prefix
      */
     public String formatMessage(String messageKey) {
-        String prefix = ChatColor.translateAlternateColorCodes('§', 
-                config.getString("message-format.prefix", "§1[§9NameColor§1]§3"));
-        String message = config.getString("messages." + messageKey, "");
-        return prefix + " " + ChatColor.translateAlternateColorCodes('&', message);
+        return getCompiled(messageKey).text;
     }
     
     /**
@@ -34,8 +67,7 @@ public class MessageFormatter {
      * @return Formatted message with prefix and replaced placeholder
      */
     public String formatMessage(String messageKey, String placeholder, String value) {
-        String message = formatMessage(messageKey);
-        return message.replace(placeholder, value);
+        return getCompiled(messageKey).render(placeholder, value);
     }
     
     /**
@@ -45,11 +77,7 @@ public class MessageFormatter {
      * @return Formatted message with prefix and replaced placeholders
      */
     public String formatMessage(String messageKey, String... replacements) {
-        String message = formatMessage(messageKey);
-        for (int i = 0; i < replacements.length - 1; i += 2) {
-            message = message.replace(replacements[i], replacements[i + 1]);
-        }
-        return message;
+        return getCompiled(messageKey).render(replacements);
     }
     
     /**
@@ -57,8 +85,7 @@ public class MessageFormatter {
      * @return The formatted prefix string
      */
     public String getPrefix() {
-        return ChatColor.translateAlternateColorCodes('§', 
-                config.getString("message-format.prefix", "§1[§9NameColor§1]§3"));
+        return prefix;
     }
     
     /**
@@ -67,7 +94,100 @@ public class MessageFormatter {
      * @return The formatted help message
      */
     public String getHelpMessage(String key) {
-        String message = config.getString("help." + key, "");
-        return ChatColor.translateAlternateColorCodes('§', message);
+        return helpMessages.computeIfAbsent(key,
+                k -> ChatColor.translateAlternateColorCodes('§', config.getString("help." + k, "")));
+    }
+    
+    /**
+     * A message split into literal segments around its {placeholder} slots
+     * literals has one more entry than placeholders: literal, slot, literal, ..., slot, literal
+     */
+    private static final class CompiledMessage {
+        
+        private final String text;
+        private final String[] literals;
+        private final String[] placeholders;
+        private final int literalLength;
+        
+        private CompiledMessage(String text, String[] literals, String[] placeholders) {
+            this.text = text;
+            this.literals = literals;
+            this.placeholders = placeholders;
+            int length = 0;
+            for (String literal : literals) {
+                length += literal.length();
+            }
+            this.literalLength = length;
+        }
+        
+        /**
+         * Find the {name} tokens in a message
+         */
+        private static CompiledMessage compile(String text) {
+            int slots = 0;
+            for (int start = text.indexOf('{'); start >= 0; start = text.indexOf('{', start + 1)) {
+                if (tokenEnd(text, start) > 0) {
+                    slots++;
+                }
+            }
+            
+            String[] literals = new String[slots + 1];
+            String[] placeholders = new String[slots];
+            int slot = 0;
+            int literalStart = 0;
+            for (int start = text.indexOf('{'); start >= 0; start = text.indexOf('{', start + 1)) {
+                int end = tokenEnd(text, start);
+                if (end > 0) {
+                    literals[slot] = text.substring(literalStart, start);
+                    placeholders[slot] = text.substring(start, end);
+                    slot++;
+                    literalStart = end;
+                    start = end - 1;
+                }
+            }
+            literals[slots] = text.substring(literalStart);
+            return new CompiledMessage(text, literals, placeholders);
+        }
+        
+        /**
+         * @return The index after the closing brace of a {name} token, or -1 if there is none at start
+         */
+        private static int tokenEnd(String text, int start) {
+            for (int i = start + 1; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '}') {
+                    return i > start + 1 ? i + 1 : -1;
+                }
+                if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Fill the slots from placeholder/value pairs; slots without a value keep their token
+         */
+        private String render(String... replacements) {
+            if (placeholders.length == 0) {
+                return text;
+            }
+            
+            StringBuilder builder = BUILDER.get();
+            builder.setLength(0);
+            builder.ensureCapacity(literalLength + 32 * placeholders.length);
+            builder.append(literals[0]);
+            for (int slot = 0; slot < placeholders.length; slot++) {
+                String value = placeholders[slot];
+                for (int i = 0; i < replacements.length - 1; i += 2) {
+                    if (placeholders[slot].equals(replacements[i])) {
+                        value = replacements[i + 1];
+                        break;
+                    }
+                }
+                builder.append(value).append(literals[slot + 1]);
+            }
+            return builder.toString();
+        }
     }
 }
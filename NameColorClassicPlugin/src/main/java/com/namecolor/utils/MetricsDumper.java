@@ -0,0 +1,94 @@
+package com.namecolor.utils;
+
+import com.namecolor.data.PlayerDataManager;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Appends a line of metrics to metrics.log in the plugin folder every metrics.dump-interval-seconds
+ * Runs as an async task; the file is opened per dump, so it can be rotated or deleted at any time
+ */
+public class MetricsDumper {
+    
+    private final JavaPlugin plugin;
+    private final PluginMetrics metrics;
+    private final PlayerDataManager dataManager;
+    private final File file;
+    private BukkitTask task;
+    
+    public MetricsDumper(JavaPlugin plugin, PluginMetrics metrics, PlayerDataManager dataManager) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.dataManager = dataManager;
+        this.file = new File(plugin.getDataFolder(), "metrics.log");
+    }
+    
+    /**
+     * Start, restart or stop dumping according to the config (main thread)
+     * @param config The current plugin config
+     */
+    public void reschedule(FileConfiguration config) {
+        cancel();
+        long intervalTicks = Math.max(0, config.getLong("metrics.dump-interval-seconds", 0)) * 20;
+        if (intervalTicks > 0) {
+            task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::dump, intervalTicks, intervalTicks);
+        }
+    }
+    
+    /**
+     * Stop dumping (used on disable)
+     */
+    public void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+    
+    private void dump() {
+        StringBuilder line = new StringBuilder(512);
+        line.append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .append(" cache.size=").append(dataManager.getCacheSize())
+                .append(" cache.bytes=").append(dataManager.getCacheMemoryBytes())
+                .append(" dirty=").append(dataManager.getDirtyCount());
+        for (PluginMetrics.Counter counter : PluginMetrics.Counter.values()) {
+            line.append(' ').append(counter.getLabel()).append('=').append(metrics.getCount(counter));
+        }
+        for (PluginMetrics.Timer timer : PluginMetrics.Timer.values()) {
+            PluginMetrics.Histogram histogram = metrics.getHistogram(timer);
+            String label = timer.getLabel();
+            line.append(' ').append(label).append(".count=").append(histogram.getCount())
+                    .append(' ').append(label).append(".avg_ms=").append(formatMillis(histogram.getMeanMillis()))
+                    .append(' ').append(label).append(".p99_ms=").append(formatMillis(histogram.getPercentileMillis(99)))
+                    .append(' ').append(label).append(".max_ms=").append(formatMillis(histogram.getMaxMillis()));
+        }
+        line.append('\n');
+        
+        try {
+            Files.write(file.toPath(), line.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            plugin.getLogger().severe(String.format("Could not write metrics.log file: %s", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Format a duration for display
+     * @param millis Duration in milliseconds
+     * @return The duration with three decimals
+     */
+    public static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.3f", millis);
+    }
+}
@@ -0,0 +1,132 @@
+package com.namecolor.utils;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds and caches the colored display and tab-list names of players
+ * Display settings are read from config once per reload instead of on every apply.
+ * Rendered names are immutable and kept in a concurrent map, so async chat threads can read them
+ */
+public class NameRenderer {
+    
+    // Display settings; a reload replaces the whole renderer
+    private final boolean showInTab;
+    private final boolean chatNames;
+    private final boolean nametags;
+    
+    // Last rendered names per player, reused while name and color stay the same
+    private final Map<UUID, RenderedName> renderedNames = new ConcurrentHashMap<>();
+    
+    public NameRenderer(FileConfiguration config) {
+        this.showInTab = config.getBoolean("display.tab-list", true);
+        this.chatNames = config.getBoolean("display.chat-format", false);
+        this.nametags = config.getBoolean("display.nametag", false);
+    }
+    
+    /**
+     * Check if NameColor puts colored names into chat messages itself
+     * @return true if the chat listener is enabled
+     */
+    public boolean isChatFormatEnabled() {
+        return chatNames;
+    }
+    
+    /**
+     * Check if above-head nametags are colored through the shared teams
+     * @return true if display.nametag is on
+     */
+    public boolean isNametagEnabled() {
+        return nametags;
+    }
+    
+    /**
+     * Check if this renderer shows names the same way as another (reload)
+     * Compares every display setting: tab list, chat format and nametags
+     * @param other The renderer to compare with
+     * @return true if every name and color is shown identically with both
+     */
+    public boolean rendersLike(NameRenderer other) {
+        return showInTab == other.showInTab && chatNames == other.chatNames && nametags == other.nametags;
+    }
+    
+    /**
+     * Take over names rendered by a renderer that renders like this one, so they are not built and applied again
+     * @param uuid Player UUID
+     * @param rendered The names the player currently shows
+     */
+    public void adopt(UUID uuid, RenderedName rendered) {
+        renderedNames.put(uuid, rendered);
+    }
+    
+    /**
+     * Get the rendered names for a player, building them only if the name or color changed
+     * @param uuid Player UUID
+     * @param name Player name
+     * @param color The player's color
+     * @return The rendered names
+     */
+    public RenderedName render(UUID uuid, String name, ChatColor color) {
+        RenderedName rendered = renderedNames.get(uuid);
+        if (rendered != null && rendered.color == color && rendered.name.equals(name)) {
+            return rendered;
+        }
+        
+        String coloredName = color + name + ChatColor.RESET;
+        // Tab list shows the plain name if disabled
+        rendered = new RenderedName(name, color, coloredName, showInTab ? coloredName : name);
+        renderedNames.put(uuid, rendered);
+        return rendered;
+    }
+    
+    /**
+     * Get the last rendered names for a player without building anything
+     * @param uuid Player UUID
+     * @return The rendered names or null if the player has none
+     */
+    public RenderedName getRendered(UUID uuid) {
+        return renderedNames.get(uuid);
+    }
+    
+    /**
+     * Forget a player's rendered names (color reset or player left)
+     * @param uuid Player UUID
+     */
+    public void invalidate(UUID uuid) {
+        renderedNames.remove(uuid);
+    }
+    
+    /**
+     * Display and tab-list names rendered for one name and color
+     */
+    public static final class RenderedName {
+        
+        private final String name;
+        private final ChatColor color;
+        private final String displayName;
+        private final String listName;
+        
+        private RenderedName(String name, ChatColor color, String displayName, String listName) {
+            this.name = name;
+            this.color = color;
+            this.displayName = displayName;
+            this.listName = listName;
+        }
+        
+        public ChatColor getColor() {
+            return color;
+        }
+        
+        public String getDisplayName() {
+            return displayName;
+        }
+        
+        public String getListName() {
+            return listName;
+        }
+    }
+}
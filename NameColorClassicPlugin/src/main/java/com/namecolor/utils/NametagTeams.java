@@ -0,0 +1,122 @@
+package com.namecolor.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.Scoreboard;
+import org.bukkit.scoreboard.Team;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Colors above-head nametags through one shared scoreboard team per color (display.nametag)
+ *
+ * The 16 teams live on the main scoreboard and differ only by their color prefix, so the number of
+ * teams stays the same however many players are online. Membership changes are collected and applied
+ * once per tick; several changes for the same player within a tick become a single move.
+ * Main thread only
+ */
+public class NametagTeams {
+    
+    // Team names are "nc_<color>", at most 16 characters as 1.12 requires
+    private static final String TEAM_PREFIX = "nc_";
+    
+    // Pending target that takes a player out of the NameColor teams
+    private static final int NO_TEAM = -1;
+    
+    private final JavaPlugin plugin;
+    private final Scoreboard scoreboard;
+    private final Team[] teams = new Team[16];
+    
+    // Player name -> color ordinal of the team to move to, in the order the changes were made
+    private final Map<String, Integer> pendingMoves = new LinkedHashMap<>();
+    private BukkitTask flushTask;
+    
+    /**
+     * Create or take over the color teams on the main scoreboard
+     * @param plugin Plugin owning the flush task
+     */
+    public NametagTeams(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.scoreboard = Bukkit.getScoreboardManager().getMainScoreboard();
+        for (int ordinal = 0; ordinal < teams.length; ordinal++) {
+            String name = TEAM_PREFIX + ColorNames.getName(ordinal);
+            Team team = scoreboard.getTeam(name);
+            if (team == null) {
+                team = scoreboard.registerNewTeam(name);
+            }
+            team.setPrefix(ColorHandler.getColorByOrdinal(ordinal).toString());
+            teams[ordinal] = team;
+        }
+    }
+    
+    /**
+     * Move a player to the team of a color on the next tick
+     * @param playerName The player's name (the team entry)
+     * @param color The color
+     */
+    public void setColor(String playerName, ChatColor color) {
+        if (color.ordinal() < teams.length) {
+            queue(playerName, color.ordinal());
+        }
+    }
+    
+    /**
+     * Take a player out of the color teams on the next tick (reset or quit)
+     * @param playerName The player's name (the team entry)
+     */
+    public void reset(String playerName) {
+        queue(playerName, NO_TEAM);
+    }
+    
+    private void queue(String playerName, int ordinal) {
+        pendingMoves.put(playerName, ordinal);
+        if (flushTask == null) {
+            flushTask = Bukkit.getScheduler().runTask(plugin, this::flush);
+        }
+    }
+    
+    /**
+     * Apply this tick's membership changes, skipping players already in the right team
+     * Teams of other plugins are only left alone on reset; a color moves the player into a NameColor team
+     */
+    private void flush() {
+        flushTask = null;
+        for (Map.Entry<String, Integer> move : pendingMoves.entrySet()) {
+            String entry = move.getKey();
+            Team current = scoreboard.getEntryTeam(entry);
+            if (move.getValue() == NO_TEAM) {
+                if (current != null && current.getName().startsWith(TEAM_PREFIX)) {
+                    current.removeEntry(entry);
+                }
+            } else {
+                Team target = teams[move.getValue()];
+                if (current == null || !current.getName().equals(target.getName())) {
+                    target.addEntry(entry);
+                }
+            }
+        }
+        pendingMoves.clear();
+    }
+    
+    /**
+     * Drop pending changes and remove the teams from the main scoreboard (disable, or nametags turned off)
+     */
+    public void unregister() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        pendingMoves.clear();
+        
+        for (Team team : teams) {
+            try {
+                team.unregister();
+            } catch (IllegalStateException e) {
+                // Already unregistered by another plugin or a command
+            }
+        }
+    }
+}
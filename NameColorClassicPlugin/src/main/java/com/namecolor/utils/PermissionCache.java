@@ -0,0 +1,143 @@
+package com.namecolor.utils;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches each player's color permissions as a bitmask
+ *
+ * Bits 0-15 are the allowed colors by ChatColor ordinal, so checking one color or listing all of
+ * them costs no permission lookups once the mask is built. A mask is rebuilt after the configured
+ * time (permission plugins may change groups at any time), when the player's op status no longer
+ * matches, or after it was invalidated on join, quit, world change or reload
+ */
+public class PermissionCache {
+    
+    private static final int ALL_COLORS = 0xFFFF;
+    private static final int BLACK_BIT = 1 << ChatColor.BLACK.ordinal();
+    private static final int ADMIN_BIT = 1 << 16;
+    private static final int OP_BIT = 1 << 17;
+    
+    // How long a mask stays valid (0 = until invalidated); a reload replaces the whole cache
+    private final long ttlNanos;
+    
+    private final Map<UUID, CachedMask> masks = new ConcurrentHashMap<>();
+    
+    public PermissionCache(FileConfiguration config) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, config.getInt("permissions.cache-seconds", 30)));
+    }
+    
+    /**
+     * Get a player's permission mask, building it if missing or stale
+     * @param player The player
+     * @return Color bits by ChatColor ordinal plus the admin and op bits
+     */
+    public int getMask(Player player) {
+        CachedMask cached = masks.get(player.getUniqueId());
+        long now = System.nanoTime();
+        boolean op = player.isOp();
+        if (cached != null && ((cached.mask & OP_BIT) != 0) == op
+                && (ttlNanos == 0 || now - cached.createdAt < ttlNanos)) {
+            return cached.mask;
+        }
+        
+        int mask = computeMask(player, op);
+        masks.put(player.getUniqueId(), new CachedMask(mask, now));
+        return mask;
+    }
+    
+    /**
+     * Get the colors a player may use
+     * @param player The player
+     * @return Bit per ChatColor ordinal (colors only)
+     */
+    public int getColorMask(Player player) {
+        return getMask(player) & ALL_COLORS;
+    }
+    
+    /**
+     * Check if a player may use a color
+     * @param player The player
+     * @param color The color
+     * @return true if the color is allowed
+     */
+    public boolean canUseColor(Player player, ChatColor color) {
+        return color != null && color.ordinal() < 16 && (getMask(player) & (1 << color.ordinal())) != 0;
+    }
+    
+    /**
+     * Check if a player is OP or has namecolor.admin
+     * @param player The player
+     * @return true if the player may change other players' colors
+     */
+    public boolean isAdmin(Player player) {
+        return (getMask(player) & ADMIN_BIT) != 0;
+    }
+    
+    /**
+     * Drop a player's mask so it is rebuilt on next use
+     * @param uuid Player UUID
+     */
+    public void invalidate(UUID uuid) {
+        masks.remove(uuid);
+    }
+    
+    /**
+     * Run the permission checks for every color
+     * Same rules as the per-color check: OP, admin, all, all except black (plus black if granted), then the single color
+     */
+    private static int computeMask(Player player, boolean op) {
+        // OP players have access to all colors
+        if (op) {
+            return ALL_COLORS | ADMIN_BIT | OP_BIT;
+        }
+        
+        // Admin permission grants access to all colors
+        if (player.hasPermission("namecolor.admin")) {
+            return ALL_COLORS | ADMIN_BIT;
+        }
+        
+        // Check for all colors permission
+        if (player.hasPermission("namecolor.color.all")) {
+            return ALL_COLORS;
+        }
+        
+        // Check for all colors except black permission (black can still be granted on its own)
+        if (player.hasPermission("namecolor.color.noblack")) {
+            int mask = ALL_COLORS & ~BLACK_BIT;
+            if (player.hasPermission("namecolor.color.black")) {
+                mask |= BLACK_BIT;
+            }
+            return mask;
+        }
+        
+        // Check individual color permissions
+        int mask = 0;
+        for (String colorName : ColorHandler.getAllColorNames()) {
+            if (player.hasPermission("namecolor.color." + colorName)) {
+                mask |= 1 << ColorHandler.getColorOrdinal(colorName);
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * A mask with the time it was built
+     */
+    private static final class CachedMask {
+        
+        private final int mask;
+        private final long createdAt;
+        
+        private CachedMask(int mask, long createdAt) {
+            this.mask = mask;
+            this.createdAt = createdAt;
+        }
+    }
+}
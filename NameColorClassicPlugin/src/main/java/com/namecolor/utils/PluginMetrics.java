@@ -0,0 +1,188 @@
+package com.namecolor.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for /namecolor stats and the metrics dump
+ *
+ * Timers are a fixed set recorded into preallocated power-of-two microsecond buckets, so recording
+ * from any thread allocates nothing and takes no lock. Percentiles are bucket upper bounds
+ */
+public class PluginMetrics {
+    
+    /**
+     * The timed operations
+     */
+    public enum Timer {
+        SAVE_SERIALIZE("save.serialize"),
+        SAVE_WRITE("save.write"),
+        LOAD("load"),
+        JOIN_APPLY("join.apply"),
+        COMMAND("command"),
+        TAB_COMPLETE("tab-complete");
+        
+        private final String label;
+        
+        Timer(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    /**
+     * The counted events
+     */
+    public enum Counter {
+        // Batches handed to the storage backend, and the changes they held
+        SAVE_BATCHES("save.batches"),
+        SAVE_RECORDS("save.records"),
+        // Changes that replaced an unsaved change of the same player (saved once instead of twice)
+        SAVE_COALESCED("save.coalesced"),
+        SAVE_FAILURES("save.failures"),
+        // Color changes held back by the rate limit, and held-back changes replaced by a newer one (never applied)
+        RATE_LIMITED("rate-limit.held"),
+        RATE_LIMIT_SUPERSEDED("rate-limit.superseded");
+        
+        private final String label;
+        
+        Counter(String label) {
+            this.label = label;
+        }
+        
+        public String getLabel() {
+            return label;
+        }
+    }
+    
+    private final Histogram[] histograms = new Histogram[Timer.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    
+    public PluginMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Record how long an operation took
+     * @param timer The operation
+     * @param nanos Duration in nanoseconds (from System.nanoTime() differences)
+     */
+    public void record(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+    
+    /**
+     * Add to a counter
+     * @param counter The counter
+     * @param amount Amount to add
+     */
+    public void increment(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+    
+    /**
+     * Get a counter's value
+     * @param counter The counter
+     * @return Total since the plugin was enabled
+     */
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+    
+    /**
+     * Get the histogram of a timer
+     * @param timer The operation
+     * @return Its histogram
+     */
+    public Histogram getHistogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+    
+    /**
+     * Latency histogram with one bucket per power of two microseconds
+     * Bucket 0 holds durations under 1 us, bucket b durations in [2^(b-1), 2^b) us
+     */
+    public static final class Histogram {
+        
+        private static final int BUCKETS = 40;
+        
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+            
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+        
+        /**
+         * @return Number of recorded operations
+         */
+        public long getCount() {
+            return count.sum();
+        }
+        
+        /**
+         * @return Mean duration in milliseconds, 0 if nothing was recorded
+         */
+        public double getMeanMillis() {
+            long recorded = count.sum();
+            return recorded == 0 ? 0 : totalNanos.sum() / (double) recorded / 1000000.0;
+        }
+        
+        /**
+         * @return Longest duration in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxNanos.get() / 1000000.0;
+        }
+        
+        /**
+         * Estimate a percentile as the upper bound of the bucket it falls in
+         * @param percentile Percentile between 0 and 100
+         * @return Duration in milliseconds (never above the maximum), 0 if nothing was recorded
+         */
+        public double getPercentileMillis(double percentile) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return Math.min((1L << i) / 1000.0, getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.namecolor.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted prefix index of /namecolor completion candidates
+ *
+ * Color names are a fixed sorted table and online player names are kept in a sorted map that is
+ * updated on join and quit, so a completion is a range scan over the matching candidates only.
+ * Candidates are lowercase and callers pass a lowercase prefix, so matching allocates nothing
+ */
+public class TabCompletionIndex {
+    
+    private static final String[] COLOR_NAMES = ColorHandler.getAllColorNames().clone();
+    private static final int[] COLOR_BITS = new int[COLOR_NAMES.length];
+    
+    static {
+        // Sorts our own copy; the display order elsewhere stays black to white
+        Arrays.sort(COLOR_NAMES);
+        for (int i = 0; i < COLOR_NAMES.length; i++) {
+            COLOR_BITS[i] = 1 << ColorHandler.getColorOrdinal(COLOR_NAMES[i]);
+        }
+    }
+    
+    // Lowercase name -> name as shown, for all online players
+    private final NavigableMap<String, String> onlineNames = new ConcurrentSkipListMap<>();
+    
+    /**
+     * Add a player who joined
+     * @param name Player name
+     */
+    public void addPlayer(String name) {
+        onlineNames.put(name.toLowerCase(Locale.ROOT), name);
+    }
+    
+    /**
+     * Remove a player who left
+     * @param name Player name
+     */
+    public void removePlayer(String name) {
+        onlineNames.remove(name.toLowerCase(Locale.ROOT));
+    }
+    
+    /**
+     * Add the allowed color names starting with a prefix
+     * @param prefix Lowercase prefix
+     * @param colorMask Allowed colors, bit per ChatColor ordinal
+     * @param out List to add matches to
+     */
+    public void completeColors(String prefix, int colorMask, List<String> out) {
+        int start = Arrays.binarySearch(COLOR_NAMES, prefix);
+        for (int i = start >= 0 ? start : -start - 1; i < COLOR_NAMES.length && COLOR_NAMES[i].startsWith(prefix); i++) {
+            if ((colorMask & COLOR_BITS[i]) != 0) {
+                out.add(COLOR_NAMES[i]);
+            }
+        }
+    }
+    
+    /**
+     * Add the online player names starting with a prefix
+     * @param prefix Lowercase prefix
+     * @param out List to add matches to
+     */
+    public void completePlayers(String prefix, List<String> out) {
+        for (Map.Entry<String, String> entry : onlineNames.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            out.add(entry.getValue());
+        }
+    }
+    
+    /**
+     * Add a fixed candidate if it starts with a prefix
+     * @param candidate Lowercase candidate
+     * @param prefix Lowercase prefix
+     * @param out List to add it to
+     */
+    public static void completeLiteral(String candidate, String prefix, List<String> out) {
+        if (candidate.startsWith(prefix)) {
+            out.add(candidate);
+        }
+    }
+}
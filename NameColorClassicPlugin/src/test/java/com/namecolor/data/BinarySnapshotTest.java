@@ -0,0 +1,212 @@
+package com.namecolor.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinarySnapshotTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void readReturnsWhatWasWritten() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        UUID[] uuids = randomUuids(1000, 11);
+        ColorStore store = storeOf(uuids);
+        
+        assertEquals(uuids.length, BinarySnapshot.write(file, store));
+        assertEquals(uuids.length, BinarySnapshot.validateHeader(file));
+        
+        assertSameEntries(store, BinarySnapshot.read(file));
+        for (int i = 0; i < uuids.length; i++) {
+            assertEquals((byte) (i & 15), BinarySnapshot.lookup(file,
+                    uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits()));
+        }
+        assertEquals(ColorStore.NO_COLOR, BinarySnapshot.lookup(file, 1, 2));
+    }
+    
+    @Test
+    public void parallelReadReturnsWhatWasWritten() throws IOException {
+        // Enough records for several decode chunks and placement ranges
+        File file = folder.newFile("playerdata.dat");
+        ColorStore store = storeOf(randomUuids(300000, 12));
+        BinarySnapshot.write(file, store);
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameEntries(store, BinarySnapshot.read(file, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void forEachStreamsRecordsInUuidOrder() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        UUID[] uuids = randomUuids(10000, 13);
+        BinarySnapshot.write(file, storeOf(uuids));
+        
+        List<UUID> streamed = new ArrayList<>();
+        assertEquals(uuids.length, BinarySnapshot.forEach(file, (uuid, color) -> streamed.add(uuid)));
+        
+        assertEquals(uuids.length, streamed.size());
+        for (int i = 1; i < streamed.size(); i++) {
+            UUID previous = streamed.get(i - 1);
+            UUID current = streamed.get(i);
+            assertTrue(BinarySnapshot.compare(previous.getMostSignificantBits(), previous.getLeastSignificantBits(),
+                    current.getMostSignificantBits(), current.getLeastSignificantBits()) < 0);
+        }
+    }
+    
+    @Test
+    public void mergeAddsChangesAndRemovesRecords() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        UUID[] uuids = randomUuids(1000, 14);
+        ColorStore expected = storeOf(uuids);
+        BinarySnapshot.write(file, expected);
+        
+        UUID added = new UUID(0, 0);
+        UUID missing = new UUID(-1, -1);
+        UUID[] changed = {uuids[0], uuids[500], uuids[999], added, missing};
+        byte[] colors = {15, ColorStore.NO_COLOR, ColorStore.NO_COLOR, 4, ColorStore.NO_COLOR};
+        long[] most = new long[changed.length];
+        long[] least = new long[changed.length];
+        for (int i = 0; i < changed.length; i++) {
+            most[i] = changed[i].getMostSignificantBits();
+            least[i] = changed[i].getLeastSignificantBits();
+        }
+        expected.put(uuids[0], (byte) 15);
+        expected.remove(uuids[500]);
+        expected.remove(uuids[999]);
+        expected.put(added, (byte) 4);
+        
+        assertEquals(expected.size(), BinarySnapshot.merge(file, most, least, colors, changed.length));
+        assertSameEntries(expected, BinarySnapshot.read(file));
+    }
+    
+    @Test
+    public void mergeCreatesAMissingSnapshot() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.dat");
+        UUID uuid = UUID.randomUUID();
+        
+        int count = BinarySnapshot.merge(file, new long[]{uuid.getMostSignificantBits()},
+                new long[]{uuid.getLeastSignificantBits()}, new byte[]{9}, 1);
+        
+        assertEquals(1, count);
+        assertEquals(9, BinarySnapshot.read(file).get(uuid));
+    }
+    
+    @Test(expected = IOException.class)
+    public void readRejectsACorruptedRecord() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        BinarySnapshot.write(file, storeOf(randomUuids(100, 15)));
+        
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = BinarySnapshot.HEADER_SIZE + 5L * BinarySnapshot.RECORD_SIZE;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+        
+        BinarySnapshot.read(file);
+    }
+    
+    @Test
+    public void readRejectsRecordsOutOfOrder() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        long[] most = {1, 3, 2};
+        writeRecords(file, most);
+        
+        assertReadFails(file, null, "record 2 is out of order or a duplicate");
+    }
+    
+    @Test
+    public void parallelReadRejectsADuplicate() throws IOException {
+        File file = folder.newFile("playerdata.dat");
+        long[] most = new long[100000];
+        for (int i = 0; i < most.length; i++) {
+            most[i] = i;
+        }
+        most[80000] = most[79999];
+        writeRecords(file, most);
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertReadFails(file, pool, "record 80000 is out of order or a duplicate");
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    static UUID[] randomUuids(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return uuids;
+    }
+    
+    private static ColorStore storeOf(UUID[] uuids) {
+        ColorStore store = new ColorStore(uuids.length);
+        for (int i = 0; i < uuids.length; i++) {
+            store.put(uuids[i], (byte) (i & 15));
+        }
+        return store;
+    }
+    
+    /**
+     * Write a snapshot with a valid header and checksum whose records are taken as given (color 1 each)
+     */
+    private static void writeRecords(File file, long[] most) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(most.length * BinarySnapshot.RECORD_SIZE);
+        for (long bits : most) {
+            records.putLong(bits).putLong(0).put((byte) 1);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(records.array());
+        
+        ByteBuffer snapshot = ByteBuffer.allocate(BinarySnapshot.HEADER_SIZE + records.capacity());
+        snapshot.putInt(BinarySnapshot.MAGIC).putInt(BinarySnapshot.VERSION).putInt(most.length).putLong(crc.getValue());
+        snapshot.put(records.array());
+        Files.write(file.toPath(), snapshot.array());
+    }
+    
+    private static void assertReadFails(File file, ForkJoinPool pool, String message) {
+        try {
+            BinarySnapshot.read(file, pool);
+            fail("read accepted an invalid snapshot");
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+    
+    private static void assertSameEntries(ColorStore expected, ColorStore actual) {
+        Map<UUID, Byte> entries = new HashMap<>();
+        expected.forEach((most, least, color) -> entries.put(new UUID(most, least), color));
+        assertEquals(entries.size(), actual.size());
+        for (Map.Entry<UUID, Byte> entry : entries.entrySet()) {
+            assertEquals((byte) entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.namecolor.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeJournalTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Test");
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void replayReturnsAppendedChangesInOrder() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        
+        ChangeJournal journal = new ChangeJournal(file);
+        journal.open(0);
+        journal.append(first, "red");
+        journal.append(second, "gold");
+        journal.append(first, null);
+        journal.append(second, "aqua");
+        journal.close();
+        
+        Map<UUID, Byte> replayed = new LinkedHashMap<>();
+        assertEquals(4, ChangeJournal.replay(file, replayed::put, LOGGER));
+        
+        assertEquals(ColorStore.NO_COLOR, (byte) replayed.get(first));
+        assertEquals(11, (byte) replayed.get(second));
+    }
+    
+    @Test
+    public void replaySkipsATornLastLine() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        String torn = "S " + UUID.randomUUID().toString().substring(0, 20);
+        Files.write(file.toPath(), ("S " + first + " red\n" + "R " + second + "\n" + torn).getBytes(StandardCharsets.UTF_8));
+        
+        Map<UUID, Byte> replayed = new LinkedHashMap<>();
+        assertEquals(2, ChangeJournal.replay(file, replayed::put, LOGGER));
+        
+        assertEquals(2, replayed.size());
+        assertEquals(12, (byte) replayed.get(first));
+        assertEquals(ColorStore.NO_COLOR, (byte) replayed.get(second));
+    }
+    
+    @Test
+    public void replaySkipsATornColorName() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Files.write(file.toPath(), ("S " + first + " blue\n" + "S " + second + " darkgr").getBytes(StandardCharsets.UTF_8));
+        
+        Map<UUID, Byte> replayed = new LinkedHashMap<>();
+        assertEquals(1, ChangeJournal.replay(file, replayed::put, LOGGER));
+        
+        assertEquals(9, (byte) replayed.get(first));
+        assertFalse(replayed.containsKey(second));
+    }
+    
+    @Test
+    public void replayOfAMissingFileIsEmpty() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        assertEquals(0, ChangeJournal.replay(file, (uuid, color) -> {
+            throw new AssertionError("no records expected");
+        }, LOGGER));
+    }
+    
+    @Test
+    public void rollMovesRecordsAsideAndKeepsAppending() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        File rolled = new File(folder.getRoot(), "playerdata.journal.old");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        
+        ChangeJournal journal = new ChangeJournal(file);
+        journal.open(0);
+        journal.append(first, "green");
+        journal.roll(rolled);
+        assertEquals(0, journal.getRecordCount());
+        journal.append(second, "white");
+        journal.close();
+        
+        Map<UUID, Byte> old = new LinkedHashMap<>();
+        assertEquals(1, ChangeJournal.replay(rolled, old::put, LOGGER));
+        assertTrue(old.containsKey(first));
+        
+        Map<UUID, Byte> current = new LinkedHashMap<>();
+        assertEquals(1, ChangeJournal.replay(file, current::put, LOGGER));
+        assertEquals(15, (byte) current.get(second));
+    }
+    
+    @Test
+    public void rollAppendsToAnEarlierRolledFile() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.journal");
+        File rolled = new File(folder.getRoot(), "playerdata.journal.old");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        
+        ChangeJournal journal = new ChangeJournal(file);
+        journal.open(0);
+        journal.append(first, "green");
+        journal.roll(rolled);
+        journal.append(second, "white");
+        journal.roll(rolled);
+        journal.close();
+        
+        Map<UUID, Byte> old = new LinkedHashMap<>();
+        assertEquals(2, ChangeJournal.replay(rolled, old::put, LOGGER));
+        assertEquals(0, ChangeJournal.replay(file, old::put, LOGGER));
+    }
+}
@@ -0,0 +1,173 @@
+package com.namecolor.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColorStoreTest {
+    
+    // Table size of an empty store
+    private static final int INITIAL_CAPACITY = ColorStore.presizedCapacity(0);
+    
+    @Test
+    public void putStoresAndReplacesColors() {
+        ColorStore store = new ColorStore();
+        UUID uuid = UUID.randomUUID();
+        
+        assertEquals(ColorStore.NO_COLOR, store.put(uuid, (byte) 3));
+        assertEquals(3, store.get(uuid));
+        assertEquals(3, store.put(uuid, (byte) 15));
+        assertEquals(15, store.get(uuid));
+        assertEquals(1, store.size());
+        assertEquals(ColorStore.NO_COLOR, store.get(UUID.randomUUID()));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void putRejectsNoColor() {
+        new ColorStore().put(UUID.randomUUID(), ColorStore.NO_COLOR);
+    }
+    
+    @Test
+    public void removeReturnsTheRemovedColor() {
+        ColorStore store = new ColorStore();
+        UUID uuid = UUID.randomUUID();
+        store.put(uuid, (byte) 7);
+        
+        assertEquals(7, store.remove(uuid));
+        assertFalse(store.contains(uuid));
+        assertEquals(0, store.size());
+        assertEquals(ColorStore.NO_COLOR, store.remove(uuid));
+    }
+    
+    @Test
+    public void growsWhileKeepingEveryEntry() {
+        ColorStore store = new ColorStore();
+        UUID[] uuids = randomUuids(10000, 1);
+        for (int i = 0; i < uuids.length; i++) {
+            store.put(uuids[i], (byte) (i & 15));
+        }
+        
+        assertEquals(uuids.length, store.size());
+        for (int i = 0; i < uuids.length; i++) {
+            assertEquals((byte) (i & 15), store.get(uuids[i]));
+        }
+    }
+    
+    @Test
+    public void removeShiftsDisplacedEntriesBack() {
+        // Four keys sharing one home slot sit in consecutive slots behind it
+        List<UUID> colliding = keysWithHome(3, 4);
+        ColorStore store = new ColorStore();
+        for (int i = 0; i < colliding.size(); i++) {
+            store.put(colliding.get(i), (byte) i);
+        }
+        
+        // Removing the first and a middle key leaves gaps that the later keys have to be shifted into
+        assertEquals(0, store.remove(colliding.get(0)));
+        assertEquals(2, store.remove(colliding.get(2)));
+        
+        assertEquals(2, store.size());
+        assertEquals(1, store.get(colliding.get(1)));
+        assertEquals(3, store.get(colliding.get(3)));
+        assertFalse(store.contains(colliding.get(0)));
+        assertFalse(store.contains(colliding.get(2)));
+    }
+    
+    @Test
+    public void removeShiftsEntriesAcrossTheEndOfTheTable() {
+        // Homed in the last slot, so the displaced keys wrap around to the start
+        List<UUID> colliding = keysWithHome(INITIAL_CAPACITY - 1, 3);
+        ColorStore store = new ColorStore();
+        for (int i = 0; i < colliding.size(); i++) {
+            store.put(colliding.get(i), (byte) i);
+        }
+        
+        store.remove(colliding.get(0));
+        
+        assertEquals(1, store.get(colliding.get(1)));
+        assertEquals(2, store.get(colliding.get(2)));
+    }
+    
+    @Test
+    public void matchesHashMapUnderRandomPutsAndRemoves() {
+        Random random = new Random(7);
+        UUID[] uuids = randomUuids(200, 2);
+        ColorStore store = new ColorStore();
+        Map<UUID, Byte> expected = new HashMap<>();
+        
+        for (int i = 0; i < 20000; i++) {
+            UUID uuid = uuids[random.nextInt(uuids.length)];
+            if (random.nextInt(3) == 0) {
+                Byte removed = expected.remove(uuid);
+                assertEquals(removed == null ? ColorStore.NO_COLOR : removed, store.remove(uuid));
+            } else {
+                byte color = (byte) random.nextInt(16);
+                Byte previous = expected.put(uuid, color);
+                assertEquals(previous == null ? ColorStore.NO_COLOR : previous, store.put(uuid, color));
+            }
+        }
+        
+        assertEquals(expected.size(), store.size());
+        for (UUID uuid : uuids) {
+            Byte color = expected.get(uuid);
+            assertEquals(color == null ? ColorStore.NO_COLOR : color, store.get(uuid));
+        }
+    }
+    
+    @Test
+    public void resizedCopyKeepsEntriesAndLeavesTheOriginal() {
+        ColorStore store = new ColorStore(1000);
+        UUID[] uuids = randomUuids(1000, 3);
+        for (int i = 0; i < uuids.length; i++) {
+            store.put(uuids[i], (byte) (i & 15));
+        }
+        for (int i = 0; i < 900; i++) {
+            store.remove(uuids[i]);
+        }
+        assertTrue(store.isOversized());
+        
+        ColorStore copy = store.resizedCopy(store.size());
+        
+        assertFalse(copy.isOversized());
+        assertEquals(100, copy.size());
+        for (int i = 900; i < uuids.length; i++) {
+            assertEquals((byte) (i & 15), copy.get(uuids[i]));
+        }
+        copy.remove(uuids[999]);
+        assertEquals((byte) (999 & 15), store.get(uuids[999]));
+    }
+    
+    static UUID[] randomUuids(int count, long seed) {
+        Random random = new Random(seed);
+        UUID[] uuids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        return uuids;
+    }
+    
+    /**
+     * Random keys whose home is the given slot of an empty store's table
+     */
+    private static List<UUID> keysWithHome(int slot, int count) {
+        Random random = new Random(slot);
+        List<UUID> keys = new ArrayList<>();
+        while (keys.size() < count) {
+            long most = random.nextLong();
+            long least = random.nextLong();
+            if (ColorStore.homeSlot(most, least, INITIAL_CAPACITY) == slot) {
+                keys.add(new UUID(most, least));
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,133 @@
+package com.namecolor.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DataFormatTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Test");
+    
+    private static final UUID FIRST = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+    private static final UUID SECOND = UUID.fromString("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+    private static final UUID THIRD = UUID.fromString("f47ac10b-58cc-4372-a567-0e02b2c3d479");
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void formatFollowsTheExtension() {
+        assertEquals(DataFormat.YAML, DataFormat.fromFileName("playerdata.yml"));
+        assertEquals(DataFormat.YAML, DataFormat.fromFileName("export.YAML"));
+        assertEquals(DataFormat.CSV, DataFormat.fromFileName("colors.csv"));
+        assertEquals(DataFormat.BINARY, DataFormat.fromFileName("playerdata.dat"));
+        assertNull(DataFormat.fromFileName("colors.txt"));
+    }
+    
+    @Test
+    public void readYamlAcceptsBukkitLayout() throws IOException {
+        File file = write("playerdata.yml",
+                "# written by Bukkit",
+                "version: 2",
+                "players:",
+                "  " + FIRST + ":",
+                "    color: red",
+                "    name: Alice",
+                "  '" + SECOND + "':",
+                "    color: \"darkblue\"",
+                "",
+                "  " + THIRD + ":",
+                "    color: RED",
+                "other:",
+                "  color: gold");
+        
+        Map<UUID, Byte> records = read(DataFormat.YAML, file);
+        
+        assertEquals(3, records.size());
+        assertEquals(12, (byte) records.get(FIRST));
+        assertEquals(1, (byte) records.get(SECOND));
+        assertEquals(12, (byte) records.get(THIRD));
+    }
+    
+    @Test
+    public void readYamlSkipsInvalidRecords() throws IOException {
+        File file = write("playerdata.yml",
+                "players:",
+                "  not-a-uuid:",
+                "    color: red",
+                "  " + FIRST + ":",
+                "    color: rainbow",
+                "  " + SECOND + ":",
+                "    color: green");
+        
+        Map<UUID, Byte> records = read(DataFormat.YAML, file);
+        
+        assertEquals(1, records.size());
+        assertEquals(10, (byte) records.get(SECOND));
+    }
+    
+    @Test
+    public void readCsvSkipsHeaderCommentsAndInvalidLines() throws IOException {
+        File file = write("colors.csv",
+                "uuid,color",
+                "# exported",
+                "",
+                FIRST + ",yellow",
+                " " + SECOND + " , gray ",
+                "no comma here",
+                "not-a-uuid,red",
+                THIRD + ",rainbow");
+        
+        Map<UUID, Byte> records = read(DataFormat.CSV, file);
+        
+        assertEquals(2, records.size());
+        assertEquals(14, (byte) records.get(FIRST));
+        assertEquals(7, (byte) records.get(SECOND));
+    }
+    
+    @Test
+    public void writtenFilesReadBack() throws IOException {
+        for (String name : new String[]{"export.yml", "export.csv", "export.dat"}) {
+            File file = new File(folder.getRoot(), name);
+            DataFormat format = DataFormat.fromFileName(name);
+            try (DataFormat.RecordOutput output = format.openWriter(file)) {
+                output.accept(FIRST, (byte) 0);
+                output.accept(SECOND, (byte) 15);
+                output.accept(THIRD, (byte) 5);
+                assertEquals(3, output.finish());
+            }
+            
+            Map<UUID, Byte> records = read(format, file);
+            
+            assertEquals(format.name(), 3, records.size());
+            assertEquals(format.name(), 0, (byte) records.get(FIRST));
+            assertEquals(format.name(), 15, (byte) records.get(SECOND));
+            assertEquals(format.name(), 5, (byte) records.get(THIRD));
+        }
+    }
+    
+    private File write(String name, String... lines) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+    
+    private static Map<UUID, Byte> read(DataFormat format, File file) throws IOException {
+        Map<UUID, Byte> records = new LinkedHashMap<>();
+        int count = format.read(file, records::put, LOGGER);
+        assertEquals(records.size(), count);
+        return records;
+    }
+}
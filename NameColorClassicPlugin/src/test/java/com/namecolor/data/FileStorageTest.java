@@ -0,0 +1,73 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.PluginMetrics;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileStorageTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Test");
+    
+    private final UUID saved = new UUID(1, 1);
+    private final UUID other = new UUID(2, 2);
+    private FileStorage storage;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @After
+    public void tearDown() throws IOException {
+        if (storage != null) {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void journaledYamlLooksUpRecordsAndChanges() throws IOException {
+        Files.write(new File(folder.getRoot(), "playerdata.yml").toPath(),
+                ("players:\n  " + saved + ":\n    color: gold\n  " + other + ":\n    color: red\n").getBytes(StandardCharsets.UTF_8));
+        storage = open(false);
+        assertFalse(storage.supportsLookup());
+        
+        assertEquals(6, storage.get(saved));
+        assertEquals(ColorStore.NO_COLOR, storage.get(UUID.randomUUID()));
+        
+        storage.upsert(saved, (byte) 9);
+        storage.delete(other);
+        assertEquals(9, storage.get(saved));
+        assertEquals(ColorStore.NO_COLOR, storage.get(other));
+    }
+    
+    @Test
+    public void binaryLooksUpRecordsAndChanges() throws IOException {
+        storage = open(true);
+        assertTrue(storage.supportsLookup());
+        
+        storage.upsert(saved, (byte) 6);
+        storage.compact();
+        storage.upsert(other, (byte) 12);
+        
+        assertEquals(6, storage.get(saved));
+        assertEquals(12, storage.get(other));
+        assertEquals(ColorStore.NO_COLOR, storage.get(UUID.randomUUID()));
+    }
+    
+    private FileStorage open(boolean binaryFormat) throws IOException {
+        FileStorage opened = new FileStorage(folder.getRoot(), LOGGER, new PluginMetrics(), binaryFormat, true, true, 1000);
+        opened.open();
+        return opened;
+    }
+}
@@ -0,0 +1,85 @@
+package com.namecolor.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class JournaledSnapshotTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Test");
+    
+    private final UUID kept = new UUID(1, 1);
+    private final UUID removed = new UUID(2, 2);
+    private final UUID changed = new UUID(3, 3);
+    private final UUID added = new UUID(4, 4);
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void newerJournalWinsOverTheCompactingOne() throws IOException {
+        write(JournaledSnapshot.COMPACTING_FILE, "S " + changed + " red\nS " + added + " blue\n");
+        write(JournaledSnapshot.JOURNAL_FILE, "S " + changed + " gold\nR " + added + "\n");
+        
+        Map<UUID, Byte> changes = JournaledSnapshot.readJournals(folder.getRoot(), LOGGER);
+        
+        assertEquals(2, changes.size());
+        assertEquals(6, (byte) changes.get(changed));
+        assertEquals(ColorStore.NO_COLOR, (byte) changes.get(added));
+    }
+    
+    @Test
+    public void missingJournalsHoldNoChanges() throws IOException {
+        assertEquals(0, JournaledSnapshot.readJournals(folder.getRoot(), LOGGER).size());
+    }
+    
+    @Test
+    public void changesReplaceSnapshotRecords() throws IOException {
+        ColorStore snapshot = new ColorStore();
+        snapshot.put(kept, (byte) 1);
+        snapshot.put(removed, (byte) 2);
+        snapshot.put(changed, (byte) 3);
+        File file = new File(folder.getRoot(), "playerdata.dat");
+        BinarySnapshot.write(file, snapshot);
+        
+        Map<UUID, Byte> changes = new HashMap<>();
+        changes.put(removed, ColorStore.NO_COLOR);
+        changes.put(changed, (byte) 9);
+        changes.put(added, (byte) 4);
+        
+        Map<UUID, Byte> records = new HashMap<>();
+        assertEquals(3, JournaledSnapshot.forEachRecord(file, true, changes, records::put, LOGGER));
+        
+        assertEquals(3, records.size());
+        assertEquals(1, (byte) records.get(kept));
+        assertEquals(9, (byte) records.get(changed));
+        assertEquals(4, (byte) records.get(added));
+        assertFalse(records.containsKey(removed));
+    }
+    
+    @Test
+    public void missingSnapshotPassesOnChangesOnly() throws IOException {
+        File file = new File(folder.getRoot(), "playerdata.yml");
+        Map<UUID, Byte> records = new HashMap<>();
+        
+        assertEquals(1, JournaledSnapshot.forEachRecord(file, false, Collections.singletonMap(added, (byte) 4), records::put, LOGGER));
+        assertEquals(4, (byte) records.get(added));
+    }
+    
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(folder.getRoot(), name).toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package com.namecolor.data;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PlayerDataManagerTest {
+    
+    private final UUID player = UUID.randomUUID();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void asyncStartupLoadsTheSavedColors() {
+        PlayerDataManager first = new PlayerDataManager(mockPlugin(config(false)));
+        first.savePlayerColor(player, "gold");
+        first.saveSync();
+        first.close();
+        
+        PlayerDataManager second = new PlayerDataManager(mockPlugin(config(true)));
+        assertTrue(second.awaitReady());
+        assertEquals("gold", second.getPlayerColor(player));
+        second.close();
+    }
+    
+    @Test
+    public void failedAsyncLoadWritesNothing() {
+        JavaPlugin plugin = mockPlugin(config(true));
+        when(plugin.getDataFolder()).thenAnswer(invocation -> {
+            throw new IllegalStateException("data folder is gone");
+        });
+        PlayerDataManager manager = new PlayerDataManager(plugin);
+        AtomicBoolean ran = new AtomicBoolean();
+        manager.whenReady(() -> ran.set(true));
+        
+        assertFalse(manager.awaitReady());
+        manager.savePlayerColor(player, "gold");
+        manager.saveSync();
+        manager.close();
+        
+        assertFalse(ran.get());
+        assertEquals(1, manager.getDirtyCount());
+        assertEquals(0, folder.getRoot().list().length);
+    }
+    
+    @Test
+    public void colorsSavedWhileTheCacheGrowsAreKept() {
+        PlayerDataManager manager = new PlayerDataManager(mockPlugin(config(false)));
+        UUID[] players = ColorStoreTest.randomUuids(5000, 4);
+        for (int i = 0; i < players.length; i++) {
+            manager.savePlayerColor(players[i], i % 2 == 0 ? "gold" : "red");
+        }
+        manager.removePlayerColor(players[0]);
+        
+        assertNull(manager.getPlayerColor(players[0]));
+        assertEquals("red", manager.getPlayerColor(players[players.length - 1]));
+        manager.saveSync();
+        assertEquals(players.length - 1, manager.getCacheSize());
+        manager.close();
+        
+        PlayerDataManager reopened = new PlayerDataManager(mockPlugin(config(false)));
+        assertEquals(players.length - 1, reopened.getCacheSize());
+        for (int i = 1; i < players.length; i++) {
+            assertEquals(i % 2 == 0 ? "gold" : "red", reopened.getPlayerColor(players[i]));
+        }
+        reopened.close();
+    }
+    
+    private static YamlConfiguration config(boolean asyncStartup) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("storage.format", "binary");
+        config.set("storage.async-startup", asyncStartup);
+        return config;
+    }
+    
+    private JavaPlugin mockPlugin(YamlConfiguration config) {
+        JavaPlugin plugin = mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(folder.getRoot());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("NameColor-Test"));
+        return plugin;
+    }
+}
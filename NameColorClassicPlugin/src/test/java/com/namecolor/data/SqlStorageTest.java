@@ -0,0 +1,163 @@
+package com.namecolor.data;
+
+import com.namecolor.utils.PluginMetrics;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SqlStorageTest {
+    
+    private static final Logger LOGGER = Logger.getLogger("NameColor-Test");
+    
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+    private final UUID third = UUID.randomUUID();
+    private final List<SqlStorage> opened = new ArrayList<>();
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @After
+    public void tearDown() throws IOException {
+        for (SqlStorage storage : opened) {
+            storage.close();
+        }
+    }
+    
+    @Test
+    public void sqliteReplacesAndDeletesRows() throws IOException {
+        SqlStorage storage = open(SqlStorage.Dialect.SQLITE, "playerdata.db", false);
+        assertUpsertsReplaceAndDeletesRemove(storage);
+        storage.compact();
+        assertEquals(1, storage.loadAll().size());
+    }
+    
+    @Test
+    public void h2MergesAndDeletesRows() throws IOException {
+        SqlStorage storage = open(SqlStorage.Dialect.H2, "playerdata", false);
+        assertUpsertsReplaceAndDeletesRemove(storage);
+    }
+    
+    @Test
+    public void h2HasNoChangeFeed() throws IOException {
+        SqlStorage storage = open(SqlStorage.Dialect.H2, "playerdata", true);
+        assertFalse(storage.supportsChangeFeed());
+        storage.batchUpsert(changes(first, (byte) 3));
+        assertEquals(3, storage.get(first));
+    }
+    
+    @Test
+    public void changeFeedSkipsThisServersChanges() throws IOException {
+        SqlStorage server = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        SqlStorage other = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        assertTrue(server.supportsChangeFeed());
+        
+        server.batchUpsert(changes(first, (byte) 12, second, (byte) 9));
+        other.batchUpsert(changes(third, (byte) 6));
+        assertEquals(3, server.getChangeSequence());
+        
+        Map<UUID, Byte> seenByOther = new LinkedHashMap<>();
+        assertEquals(3, other.readChanges(0, seenByOther::put));
+        assertEquals(2, seenByOther.size());
+        assertEquals(12, (byte) seenByOther.get(first));
+        assertEquals(9, (byte) seenByOther.get(second));
+        
+        Map<UUID, Byte> seenByServer = new LinkedHashMap<>();
+        assertEquals(3, server.readChanges(0, seenByServer::put));
+        assertEquals(1, seenByServer.size());
+        assertEquals(6, (byte) seenByServer.get(third));
+    }
+    
+    @Test
+    public void changeFeedPassesOnRemovalsAndTheLastChangeOnly() throws IOException {
+        SqlStorage server = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        SqlStorage other = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        server.batchUpsert(changes(first, (byte) 12, second, (byte) 9));
+        long seen = other.readChanges(0, (uuid, color) -> { });
+        
+        server.batchUpsert(changes(first, ColorStore.NO_COLOR));
+        server.batchUpsert(changes(second, (byte) 1));
+        server.batchUpsert(changes(second, (byte) 2));
+        // A player whose latest change came from the reading server is already up to date there
+        server.batchUpsert(changes(third, (byte) 4));
+        other.batchUpsert(changes(third, (byte) 5));
+        
+        Map<UUID, Byte> seenByOther = new LinkedHashMap<>();
+        assertEquals(server.getChangeSequence(), other.readChanges(seen, seenByOther::put));
+        assertEquals(2, seenByOther.size());
+        assertEquals(ColorStore.NO_COLOR, (byte) seenByOther.get(first));
+        assertEquals(2, (byte) seenByOther.get(second));
+        assertEquals(ColorStore.NO_COLOR, other.get(first));
+    }
+    
+    @Test
+    public void changeFeedReportsTrimmedChanges() throws IOException {
+        SqlStorage server = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        SqlStorage other = open(SqlStorage.Dialect.SQLITE, "shared.db", true);
+        
+        // One batch more than the feed keeps trims its oldest entries
+        int trimmed = 10;
+        Map<UUID, Byte> batch = new HashMap<>();
+        for (int i = 0; i < SqlStorage.CHANGE_FEED_RETAIN + trimmed; i++) {
+            batch.put(UUID.randomUUID(), (byte) (i & 15));
+        }
+        server.batchUpsert(batch);
+        long last = server.getChangeSequence();
+        
+        assertEquals(-1, other.readChanges(0, (uuid, color) -> { }));
+        assertEquals(-1, other.readChanges(trimmed - 1, (uuid, color) -> { }));
+        
+        int[] read = {0};
+        assertEquals(last, other.readChanges(trimmed, (uuid, color) -> read[0]++));
+        assertEquals(SqlStorage.CHANGE_FEED_RETAIN, read[0]);
+        assertEquals(batch.size(), other.loadAll().size());
+    }
+    
+    private void assertUpsertsReplaceAndDeletesRemove(SqlStorage storage) throws IOException {
+        assertTrue(storage.supportsLookup());
+        assertEquals(ColorStore.NO_COLOR, storage.get(first));
+        
+        storage.batchUpsert(changes(first, (byte) 12, second, (byte) 9));
+        storage.batchUpsert(changes(first, (byte) 14, second, ColorStore.NO_COLOR));
+        storage.upsert(third, (byte) 0);
+        storage.delete(third);
+        
+        assertEquals(14, storage.get(first));
+        assertEquals(ColorStore.NO_COLOR, storage.get(second));
+        assertEquals(ColorStore.NO_COLOR, storage.get(third));
+        
+        ColorStore loaded = storage.loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(14, loaded.get(first));
+    }
+    
+    private SqlStorage open(SqlStorage.Dialect dialect, String fileName, boolean changeFeed) throws IOException {
+        SqlStorage storage = new SqlStorage(new File(folder.getRoot(), fileName), dialect, LOGGER, new PluginMetrics(), changeFeed);
+        storage.open();
+        opened.add(storage);
+        return storage;
+    }
+    
+    private static Map<UUID, Byte> changes(Object... uuidsAndColors) {
+        Map<UUID, Byte> changes = new LinkedHashMap<>();
+        for (int i = 0; i < uuidsAndColors.length; i += 2) {
+            changes.put((UUID) uuidsAndColors[i], (Byte) uuidsAndColors[i + 1]);
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,195 @@
+package com.namecolor.utils;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ColorChangeLimiterTest {
+    
+    // Tasks handed to the scheduler, run by the tests when they choose
+    private static final List<Runnable> SCHEDULED = new ArrayList<>();
+    
+    private final UUID player = UUID.randomUUID();
+    private final CommandSender admin = mock(CommandSender.class);
+    private final CommandSender otherAdmin = mock(CommandSender.class);
+    private YamlConfiguration config;
+    private PluginMetrics metrics;
+    private ColorChangeLimiter limiter;
+    
+    @BeforeClass
+    public static void setUpServer() {
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        when(scheduler.runTaskLater(any(Plugin.class), any(Runnable.class), anyLong())).thenAnswer(invocation -> {
+            SCHEDULED.add(invocation.getArgument(1));
+            return mock(BukkitTask.class);
+        });
+        Server server = mock(Server.class);
+        when(server.getLogger()).thenReturn(Logger.getLogger("NameColor-Test"));
+        when(server.getScheduler()).thenReturn(scheduler);
+        Bukkit.setServer(server);
+    }
+    
+    @Before
+    public void setUp() {
+        SCHEDULED.clear();
+        config = new YamlConfiguration();
+        config.set("rate-limit.admin.burst", 2);
+        config.set("rate-limit.admin.refill-seconds", 60);
+        metrics = new PluginMetrics();
+        limiter = new ColorChangeLimiter(mockPlugin(config), metrics, "admin");
+    }
+    
+    @Test
+    public void offWithoutRefillSeconds() {
+        ColorChangeLimiter self = new ColorChangeLimiter(mockPlugin(new YamlConfiguration()), metrics, "self");
+        AtomicInteger applied = new AtomicInteger();
+        
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ColorChangeLimiter.Result.APPLIED, self.submit(player, admin, applied::incrementAndGet, null));
+        }
+        
+        assertEquals(100, applied.get());
+        assertEquals(0, self.getWaitMillis(player));
+        assertTrue(SCHEDULED.isEmpty());
+    }
+    
+    @Test
+    public void holdsBackChangesAfterTheBurst() {
+        AtomicInteger applied = new AtomicInteger();
+        
+        assertEquals(ColorChangeLimiter.Result.APPLIED, limiter.submit(player, admin, applied::incrementAndGet, null));
+        assertEquals(ColorChangeLimiter.Result.APPLIED, limiter.submit(player, admin, applied::incrementAndGet, null));
+        assertEquals(ColorChangeLimiter.Result.DEFERRED, limiter.submit(player, admin, applied::incrementAndGet, null));
+        
+        assertEquals(2, applied.get());
+        assertEquals(1, SCHEDULED.size());
+        assertTrue(limiter.getWaitMillis(player) > 0);
+        assertEquals(1, metrics.getCount(PluginMetrics.Counter.RATE_LIMITED));
+    }
+    
+    @Test
+    public void appliesOnlyTheLatestHeldBackChange() {
+        List<String> applied = new ArrayList<>();
+        limiter.submit(player, admin, () -> applied.add("red"), null);
+        limiter.submit(player, admin, () -> applied.add("blue"), null);
+        
+        assertEquals(ColorChangeLimiter.Result.DEFERRED, limiter.submit(player, admin, () -> applied.add("green"), null));
+        assertEquals(ColorChangeLimiter.Result.REPLACED, limiter.submit(player, admin, () -> applied.add("gold"), null));
+        limiter.applyAllPending();
+        
+        assertEquals(3, applied.size());
+        assertEquals("gold", applied.get(2));
+        assertEquals(1, metrics.getCount(PluginMetrics.Counter.RATE_LIMIT_SUPERSEDED));
+    }
+    
+    @Test
+    public void waitsForTheTokenWhenTheTaskRunsEarly() {
+        AtomicInteger applied = new AtomicInteger();
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        
+        // No token is due for a minute, so the task schedules itself again instead of applying
+        SCHEDULED.get(0).run();
+        
+        assertEquals(2, applied.get());
+        assertEquals(2, SCHEDULED.size());
+    }
+    
+    @Test
+    public void tellsTheReplacedAdmin() {
+        List<CommandSender> replacedBy = new ArrayList<>();
+        limiter.submit(player, admin, () -> { }, null);
+        limiter.submit(player, admin, () -> { }, null);
+        
+        limiter.submit(player, admin, () -> { }, replacedBy::add);
+        limiter.submit(player, admin, () -> { }, replacedBy::add);
+        assertTrue(replacedBy.isEmpty());
+        
+        limiter.submit(player, otherAdmin, () -> { }, replacedBy::add);
+        assertEquals(1, replacedBy.size());
+        assertSame(otherAdmin, replacedBy.get(0));
+    }
+    
+    @Test
+    public void quittingDropsTheHeldBackChange() {
+        AtomicInteger applied = new AtomicInteger();
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        
+        limiter.release(player);
+        SCHEDULED.get(0).run();
+        
+        assertEquals(2, applied.get());
+        assertEquals(0, limiter.getWaitMillis(player));
+    }
+    
+    @Test
+    public void bulkChangeDropsHeldBackChangesAndTellsTheAdmin() {
+        UUID untouched = UUID.randomUUID();
+        AtomicInteger applied = new AtomicInteger();
+        List<CommandSender> replacedBy = new ArrayList<>();
+        for (UUID uuid : Arrays.asList(player, untouched)) {
+            limiter.submit(uuid, admin, applied::incrementAndGet, null);
+            limiter.submit(uuid, admin, applied::incrementAndGet, null);
+            limiter.submit(uuid, admin, applied::incrementAndGet, replacedBy::add);
+        }
+        
+        limiter.discard(Collections.singletonList(player), otherAdmin);
+        assertEquals(Collections.singletonList(otherAdmin), replacedBy);
+        assertEquals(1, metrics.getCount(PluginMetrics.Counter.RATE_LIMIT_SUPERSEDED));
+        
+        // The dropped change's task finds nothing to apply; the other player's change is still held back
+        SCHEDULED.get(0).run();
+        limiter.applyAllPending();
+        assertEquals(5, applied.get());
+        
+        // The bucket keeps its tokens, so the next change is still limited
+        assertEquals(ColorChangeLimiter.Result.DEFERRED, limiter.submit(player, admin, applied::incrementAndGet, null));
+    }
+    
+    @Test
+    public void turningTheLimitOffAppliesHeldBackChanges() {
+        AtomicInteger applied = new AtomicInteger();
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        limiter.submit(player, admin, applied::incrementAndGet, null);
+        
+        config.set("rate-limit.admin.refill-seconds", 0);
+        limiter.reloadSettings(config);
+        
+        assertEquals(3, applied.get());
+        assertEquals(ColorChangeLimiter.Result.APPLIED, limiter.submit(player, admin, applied::incrementAndGet, null));
+    }
+    
+    private static JavaPlugin mockPlugin(YamlConfiguration config) {
+        JavaPlugin plugin = mock(JavaPlugin.class);
+        when(plugin.getConfig()).thenReturn(config);
+        return plugin;
+    }
+}
@@ -0,0 +1,66 @@
+package com.namecolor.utils;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PermissionCacheTest {
+    
+    private final PermissionCache cache = new PermissionCache(new YamlConfiguration());
+    
+    @Test
+    public void noblackLeavesOutBlack() {
+        Player player = player("namecolor.color.noblack");
+        
+        assertFalse(cache.canUseColor(player, ChatColor.BLACK));
+        assertTrue(cache.canUseColor(player, ChatColor.WHITE));
+        assertEquals(15, Integer.bitCount(cache.getColorMask(player)));
+    }
+    
+    @Test
+    public void noblackWithBlackAllowsEveryColor() {
+        Player player = player("namecolor.color.noblack", "namecolor.color.black");
+        
+        assertTrue(cache.canUseColor(player, ChatColor.BLACK));
+        assertEquals(16, Integer.bitCount(cache.getColorMask(player)));
+    }
+    
+    @Test
+    public void singleColorsAreChecked() {
+        Player player = player("namecolor.color.red", "namecolor.color.darkblue");
+        
+        assertTrue(cache.canUseColor(player, ChatColor.RED));
+        assertTrue(cache.canUseColor(player, ChatColor.DARK_BLUE));
+        assertFalse(cache.canUseColor(player, ChatColor.BLACK));
+        assertEquals(2, Integer.bitCount(cache.getColorMask(player)));
+        assertFalse(cache.isAdmin(player));
+    }
+    
+    @Test
+    public void adminsMayUseEveryColor() {
+        Player player = player("namecolor.admin");
+        
+        assertTrue(cache.isAdmin(player));
+        assertEquals(16, Integer.bitCount(cache.getColorMask(player)));
+    }
+    
+    private static Player player(String... permissions) {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.hasPermission(anyString())).thenReturn(false);
+        for (String permission : permissions) {
+            when(player.hasPermission(permission)).thenReturn(true);
+        }
+        return player;
+    }
+}
@@ -0,0 +1,39 @@
+package com.namecolor.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TabCompletionIndexTest {
+    
+    @Test
+    public void colorsCompleteInAlphabeticalOrder() {
+        List<String> out = new ArrayList<>();
+        new TabCompletionIndex().completeColors("dark", 0xFFFF, out);
+        
+        assertEquals(Arrays.asList("darkaqua", "darkblue", "darkgray", "darkgreen", "darkpurple", "darkred"), out);
+    }
+    
+    @Test
+    public void sortingLeavesTheSharedNamesInDisplayOrder() {
+        new TabCompletionIndex().completeColors("", 0xFFFF, new ArrayList<>());
+        
+        String[] names = ColorHandler.getAllColorNames();
+        for (int ordinal = 0; ordinal < names.length; ordinal++) {
+            assertEquals(ordinal, ColorHandler.getColorOrdinal(names[ordinal]));
+        }
+    }
+    
+    @Test
+    public void maskLimitsTheColors() {
+        List<String> out = new ArrayList<>();
+        int mask = 1 << ColorHandler.getColorOrdinal("gold") | 1 << ColorHandler.getColorOrdinal("green");
+        new TabCompletionIndex().completeColors("g", mask, out);
+        
+        assertEquals(Arrays.asList("gold", "green"), out);
+    }
+}